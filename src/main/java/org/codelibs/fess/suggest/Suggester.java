@@ -18,22 +18,34 @@ package org.codelibs.fess.suggest;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.Path;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Stream;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.codelibs.core.lang.StringUtil;
 import org.codelibs.fess.suggest.analysis.SuggestAnalyzer;
+import org.codelibs.fess.suggest.concurrent.RequestCoalescer;
 import org.codelibs.fess.suggest.constants.FieldNames;
 import org.codelibs.fess.suggest.converter.ReadingConverter;
+import org.codelibs.fess.suggest.engine.LocalSuggestEngine;
 import org.codelibs.fess.suggest.exception.SuggesterException;
+import org.codelibs.fess.suggest.index.DisabledRefreshIntervals;
+import org.codelibs.fess.suggest.index.RefreshPolicy;
 import org.codelibs.fess.suggest.index.SuggestIndexer;
 import org.codelibs.fess.suggest.normalizer.Normalizer;
+import org.codelibs.fess.suggest.request.multi.MultiSuggestRequestBuilder;
+import org.codelibs.fess.suggest.request.popularwords.PopularWordsCache;
 import org.codelibs.fess.suggest.request.popularwords.PopularWordsRequestBuilder;
 import org.codelibs.fess.suggest.request.suggest.SuggestRequestBuilder;
+import org.codelibs.fess.suggest.request.suggest.SuggestResponse;
 import org.codelibs.fess.suggest.settings.SuggestSettings;
 import org.elasticsearch.action.admin.indices.alias.Alias;
 import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequestBuilder;
@@ -45,11 +57,19 @@ import org.elasticsearch.action.admin.indices.refresh.RefreshResponse;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.cluster.metadata.AliasMetaData;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 
 public class Suggester {
+    private static final Logger logger = LogManager.getLogger(Suggester.class);
+
+    protected static final String REFRESH_INTERVAL = "index.refresh_interval";
+    protected static final String NUMBER_OF_REPLICAS = "index.number_of_replicas";
+    protected static final String AUTO_EXPAND_REPLICAS = "index.auto_expand_replicas";
+
     protected final Client client;
     protected final SuggestSettings suggestSettings;
     protected final ReadingConverter readingConverter;
@@ -61,10 +81,25 @@ public class Suggester {
     protected final String type;
 
     protected final ExecutorService threadPool;
+    protected final ExecutorService callbackPool;
+
+    protected final RequestCoalescer<SuggestResponse> suggestRequestCoalescer = new RequestCoalescer<>();
+
+    protected final List<LocalSuggestEngine> localSuggestEngines = new CopyOnWriteArrayList<>();
+
+    protected final PopularWordsCache popularWordsCache;
+
+    protected final DisabledRefreshIntervals disabledRefreshIntervals = new DisabledRefreshIntervals();
 
     public Suggester(final Client client, final SuggestSettings settings, final ReadingConverter readingConverter,
             final ReadingConverter contentsReadingConverter, final Normalizer normalizer, final SuggestAnalyzer analyzer,
             final ExecutorService threadPool) {
+        this(client, settings, readingConverter, contentsReadingConverter, normalizer, analyzer, threadPool, null);
+    }
+
+    public Suggester(final Client client, final SuggestSettings settings, final ReadingConverter readingConverter,
+            final ReadingConverter contentsReadingConverter, final Normalizer normalizer, final SuggestAnalyzer analyzer,
+            final ExecutorService threadPool, final ExecutorService callbackPool) {
         this.client = client;
         this.suggestSettings = settings;
         this.readingConverter = readingConverter;
@@ -74,22 +109,41 @@ public class Suggester {
         this.index = settings.getAsString(SuggestSettings.DefaultKeys.INDEX, StringUtil.EMPTY);
         this.type = settings.getAsString(SuggestSettings.DefaultKeys.TYPE, StringUtil.EMPTY);
         this.threadPool = threadPool;
+        this.callbackPool = callbackPool;
+        this.popularWordsCache = new PopularWordsCache(threadPool)
+                .setTimeout(TimeValue.parseTimeValue(settings.getSearchTimeout(), "searchTimeout").millis());
     }
 
     public SuggestRequestBuilder suggest() {
-        return new SuggestRequestBuilder(client, readingConverter, normalizer).setIndex(getSearchAlias(index)).setType(type);
+        return new SuggestRequestBuilder(client, readingConverter, normalizer).setIndex(getSearchAlias(index)).setType(type)
+                .setCoalescer(suggestRequestCoalescer).setCallbackExecutor(callbackPool);
+    }
+
+    public SuggestRequestBuilder localSuggest() {
+        // served from the latest snapshot, which is rebuilt on switchIndex, so it may not reflect later writes.
+        return suggest().setLocalSuggestEngine(getLocalSuggestEngine());
     }
 
     public PopularWordsRequestBuilder popularWords() {
-        return new PopularWordsRequestBuilder(client).setIndex(getSearchAlias(index)).setType(type);
+        return new PopularWordsRequestBuilder(client).setIndex(getSearchAlias(index)).setType(type).setCache(popularWordsCache)
+                .setCallbackExecutor(callbackPool);
+    }
+
+    public MultiSuggestRequestBuilder multi() {
+        return new MultiSuggestRequestBuilder(client);
     }
 
     public RefreshResponse refresh() {
-        return client.admin().indices().prepareRefresh().execute().actionGet(suggestSettings.getIndexTimeout());
+        final RefreshResponse response = client.admin().indices().prepareRefresh().execute().actionGet(suggestSettings.getIndexTimeout());
+        popularWordsCache.clear();
+        return response;
     }
 
     public void shutdown() {
         threadPool.shutdownNow();
+        if (callbackPool != null) {
+            callbackPool.shutdownNow();
+        }
     }
 
     public boolean createIndexIfNothing() {
@@ -116,6 +170,10 @@ public class Suggester {
     }
 
     public void createNextIndex() {
+        createNextIndex(false);
+    }
+
+    public void createNextIndex(final boolean rebuild) {
         try {
             final List<String> prevIndices = new ArrayList<>();
             final IndicesExistsResponse response =
@@ -129,9 +187,12 @@ public class Suggester {
             final String mappingSource = getDefaultMappings();
             final String settingsSource = getDefaultIndexSettings();
             final String indexName = createIndexName(index);
-            CreateIndexResponse createIndexResponse =
-                    client.admin().indices().prepareCreate(indexName).setSettings(settingsSource, XContentType.JSON)
-                            .addMapping(type, mappingSource, XContentType.JSON).execute().actionGet(suggestSettings.getIndicesTimeout());
+            final Settings.Builder indexSettings = Settings.builder().loadFromSource(settingsSource, XContentType.JSON);
+            if (rebuild) {
+                indexSettings.put(REFRESH_INTERVAL, "-1").put(NUMBER_OF_REPLICAS, 0).put(AUTO_EXPAND_REPLICAS, false);
+            }
+            CreateIndexResponse createIndexResponse = client.admin().indices().prepareCreate(indexName).setSettings(indexSettings)
+                    .addMapping(type, mappingSource, XContentType.JSON).execute().actionGet(suggestSettings.getIndicesTimeout());
             if (!createIndexResponse.isAcknowledged()) {
                 throw new SuggesterException("Failed to create index");
             }
@@ -143,11 +204,51 @@ public class Suggester {
                 aliasesRequestBuilder.removeAlias(prevIndex, getUpdateAlias(index));
             }
             aliasesRequestBuilder.execute().actionGet(suggestSettings.getIndicesTimeout());
+            if (rebuild || isRebuilding()) {
+                suggestSettings.set(SuggestSettings.DefaultKeys.REBUILDING_INDEX, rebuild ? indexName : StringUtil.EMPTY);
+            }
         } catch (final Exception e) {
             throw new SuggesterException("Failed to create index.", e);
         }
     }
 
+    public void finishRebuild() {
+        try {
+            final String updateAlias = getUpdateAlias(index);
+            final List<String> updateIndices = new ArrayList<>();
+            client.admin().indices().prepareGetAliases(updateAlias).execute().actionGet(suggestSettings.getIndicesTimeout()).getAliases()
+                    .keysIt().forEachRemaining(updateIndices::add);
+            if (updateIndices.size() != 1) {
+                throw new SuggesterException("Unexpected update indices num:" + updateIndices.size());
+            }
+            final String updateIndex = updateIndices.get(0);
+
+            final Settings defaultSettings = Settings.builder().loadFromSource(getDefaultIndexSettings(), XContentType.JSON).build();
+            final Settings.Builder restoredSettings = Settings.builder();
+            for (final String key : new String[] { REFRESH_INTERVAL, NUMBER_OF_REPLICAS, AUTO_EXPAND_REPLICAS }) {
+                if (defaultSettings.get(key) == null) {
+                    restoredSettings.putNull(key);
+                } else {
+                    restoredSettings.put(key, defaultSettings.get(key));
+                }
+            }
+            client.admin().indices().prepareRefresh(updateIndex).execute().actionGet(suggestSettings.getIndicesTimeout());
+            client.admin().indices().prepareForceMerge(updateIndex).setMaxNumSegments(1).execute()
+                    .actionGet(suggestSettings.getForceMergeTimeout());
+            client.admin().indices().prepareUpdateSettings(updateIndex).setSettings(restoredSettings).execute()
+                    .actionGet(suggestSettings.getIndicesTimeout());
+            client.admin().cluster().prepareHealth(updateIndex).setWaitForYellowStatus().execute()
+                    .actionGet(suggestSettings.getClusterTimeout());
+
+            new SuggestRequestBuilder(client, readingConverter, normalizer).setIndex(updateIndex).setType(type).execute().getResponse();
+
+            suggestSettings.set(SuggestSettings.DefaultKeys.REBUILDING_INDEX, StringUtil.EMPTY);
+            switchIndex();
+        } catch (final Exception e) {
+            throw new SuggesterException("Failed to finish rebuilding index.", e);
+        }
+    }
+
     public void switchIndex() {
         try {
             final List<String> updateIndices = new ArrayList<>();
@@ -186,9 +287,25 @@ public class Suggester {
 
             client.admin().indices().prepareAliases().removeAlias(searchIndex, searchAlias).addAlias(updateIndex, searchAlias).execute()
                     .actionGet(suggestSettings.getIndicesTimeout());
+            popularWordsCache.clear();
         } catch (final Exception e) {
             throw new SuggesterException("Failed to create index.", e);
         }
+        localSuggestEngines.forEach(this::rebuildLocalSuggestEngine);
+    }
+
+    protected void rebuildLocalSuggestEngine(final LocalSuggestEngine engine) {
+        try {
+            threadPool.execute(() -> {
+                try {
+                    engine.rebuild();
+                } catch (final Exception e) {
+                    logger.warn("Failed to rebuild a local suggest index.", e);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            logger.warn("Failed to schedule rebuilding a local suggest index.", e);
+        }
     }
 
     public void removeDisableIndices() {
@@ -206,6 +323,21 @@ public class Suggester {
         }).forEach(s -> client.admin().indices().prepareDelete(s).execute().actionGet(suggestSettings.getIndicesTimeout()));
     }
 
+    public LocalSuggestEngine createLocalSuggestEngine(final Path dir) {
+        final LocalSuggestEngine engine = new LocalSuggestEngine(client, suggestSettings, getSearchAlias(index), type, dir);
+        localSuggestEngines.add(engine);
+        return engine;
+    }
+
+    protected LocalSuggestEngine getLocalSuggestEngine() {
+        for (final LocalSuggestEngine engine : localSuggestEngines) {
+            if (engine.isAvailable()) {
+                return engine;
+            }
+        }
+        return null;
+    }
+
     public SuggestIndexer indexer() {
         return createDefaultIndexer();
     }
@@ -227,9 +359,33 @@ public class Suggester {
         return normalizer;
     }
 
+    public PopularWordsCache getPopularWordsCache() {
+        return popularWordsCache;
+    }
+
+    public ExecutorService getThreadPool() {
+        return threadPool;
+    }
+
+    public ExecutorService getCallbackPool() {
+        return callbackPool;
+    }
+
+    public RequestCoalescer<SuggestResponse> getSuggestRequestCoalescer() {
+        return suggestRequestCoalescer;
+    }
+
     protected SuggestIndexer createDefaultIndexer() {
-        return new SuggestIndexer(client, getUpdateAlias(index), type, readingConverter, contentsReadingConverter, normalizer, analyzer,
-                suggestSettings, threadPool);
+        final SuggestIndexer indexer = new SuggestIndexer(client, getUpdateAlias(index), type, readingConverter, contentsReadingConverter,
+                normalizer, analyzer, suggestSettings, threadPool).setDisabledRefreshIntervals(disabledRefreshIntervals);
+        if (isRebuilding()) {
+            indexer.setCreateOnly(true).setRefreshPolicy(RefreshPolicy.NONE);
+        }
+        return indexer;
+    }
+
+    public boolean isRebuilding() {
+        return StringUtil.isNotBlank(suggestSettings.getAsString(SuggestSettings.DefaultKeys.REBUILDING_INDEX, StringUtil.EMPTY));
     }
 
     public String getIndex() {
@@ -17,9 +17,11 @@ package org.codelibs.fess.suggest;
 
 import java.io.IOException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.codelibs.fess.suggest.analysis.SuggestAnalyzer;
+import org.codelibs.fess.suggest.concurrent.SuggestThreadPool;
 import org.codelibs.fess.suggest.converter.ReadingConverter;
 import org.codelibs.fess.suggest.exception.SuggesterException;
 import org.codelibs.fess.suggest.normalizer.Normalizer;
@@ -37,8 +39,15 @@ public class SuggesterBuilder {
     protected Normalizer normalizer;
     protected SuggestAnalyzer analyzer;
     protected ExecutorService threadPool;
+    protected ExecutorService callbackPool;
 
     protected int threadPoolSize = Runtime.getRuntime().availableProcessors();
+    protected int threadPoolQueueCapacity = 1000;
+    protected RejectedExecutionHandler threadPoolRejectionPolicy = new ThreadPoolExecutor.AbortPolicy();
+    protected int callbackPoolSize = Runtime.getRuntime().availableProcessors();
+    protected int callbackPoolQueueCapacity = 10000;
+    protected RejectedExecutionHandler callbackPoolRejectionPolicy = new ThreadPoolExecutor.CallerRunsPolicy();
+    protected boolean virtualThreads = false;
 
     public SuggesterBuilder settings(final SuggestSettings settings) {
         this.settings = settings;
@@ -82,6 +91,41 @@ public class SuggesterBuilder {
         return this;
     }
 
+    public SuggesterBuilder threadPoolQueueCapacity(final int threadPoolQueueCapacity) {
+        this.threadPoolQueueCapacity = threadPoolQueueCapacity;
+        return this;
+    }
+
+    public SuggesterBuilder threadPoolRejectionPolicy(final RejectedExecutionHandler threadPoolRejectionPolicy) {
+        this.threadPoolRejectionPolicy = threadPoolRejectionPolicy;
+        return this;
+    }
+
+    public SuggesterBuilder callbackPool(final ExecutorService callbackPool) {
+        this.callbackPool = callbackPool;
+        return this;
+    }
+
+    public SuggesterBuilder callbackPoolSize(final int callbackPoolSize) {
+        this.callbackPoolSize = callbackPoolSize;
+        return this;
+    }
+
+    public SuggesterBuilder callbackPoolQueueCapacity(final int callbackPoolQueueCapacity) {
+        this.callbackPoolQueueCapacity = callbackPoolQueueCapacity;
+        return this;
+    }
+
+    public SuggesterBuilder callbackPoolRejectionPolicy(final RejectedExecutionHandler callbackPoolRejectionPolicy) {
+        this.callbackPoolRejectionPolicy = callbackPoolRejectionPolicy;
+        return this;
+    }
+
+    public SuggesterBuilder virtualThreads(final boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        return this;
+    }
+
     public Suggester build(final Client client, final String id) {
         if (settings == null) {
             if (settingsBuilder == null) {
@@ -118,9 +162,16 @@ public class SuggesterBuilder {
         }
 
         if (threadPool == null) {
-            threadPool = Executors.newFixedThreadPool(threadPoolSize);
+            threadPool = SuggestThreadPool.create("suggest-" + id, threadPoolSize, threadPoolQueueCapacity, threadPoolRejectionPolicy,
+                    virtualThreads);
+        }
+
+        if (callbackPool == null) {
+            callbackPool = SuggestThreadPool.create("suggest-callback-" + id, callbackPoolSize, callbackPoolQueueCapacity,
+                    callbackPoolRejectionPolicy, virtualThreads);
         }
 
-        return new Suggester(client, settings, readingConverter, contentsReadingConverter, normalizer, analyzer, threadPool);
+        return new Suggester(client, settings, readingConverter, contentsReadingConverter, normalizer, analyzer, threadPool,
+                callbackPool);
     }
 }
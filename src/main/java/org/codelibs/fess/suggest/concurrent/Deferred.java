@@ -17,15 +17,23 @@ package org.codelibs.fess.suggest.concurrent;
 
 import java.util.ArrayList;
 import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 
 import org.codelibs.fess.suggest.exception.SuggesterException;
 import org.codelibs.fess.suggest.request.Response;
 
 public class Deferred<RESPONSE extends Response> {
+    private static volatile ScheduledExecutorService timeoutScheduler = null;
+
     private RESPONSE response = null;
 
     private Throwable error = null;
@@ -36,6 +44,10 @@ public class Deferred<RESPONSE extends Response> {
 
     private final Queue<Consumer<Throwable>> errorCallbacks = new LinkedBlockingQueue<>();
 
+    private final Queue<Runnable> cancelCallbacks = new LinkedBlockingQueue<>();
+
+    private boolean cancelled = false;
+
     private final CountDownLatch latch = new CountDownLatch(1);
 
     public void resolve(final RESPONSE r) {
@@ -45,6 +57,7 @@ public class Deferred<RESPONSE extends Response> {
                 return;
             }
             response = r;
+            cancelCallbacks.clear();
 
             executeCallbacks = new ArrayList<>(doneCallbacks.size());
             Consumer<RESPONSE> callback;
@@ -67,6 +80,7 @@ public class Deferred<RESPONSE extends Response> {
                 return;
             }
             error = t;
+            cancelCallbacks.clear();
 
             executeCallbacks = new ArrayList<>(errorCallbacks.size());
             Consumer<Throwable> callback;
@@ -82,6 +96,18 @@ public class Deferred<RESPONSE extends Response> {
         latch.countDown();
     }
 
+    public void onCancel(final Runnable callback) {
+        synchronized (Deferred.this) {
+            if (!cancelled) {
+                if (response == null && error == null) {
+                    cancelCallbacks.add(callback);
+                }
+                return;
+            }
+        }
+        callback.run();
+    }
+
     public Promise then(final Consumer<RESPONSE> consumer) {
         return promise.then(consumer);
     }
@@ -131,6 +157,53 @@ public class Deferred<RESPONSE extends Response> {
             return this;
         }
 
+        public boolean cancel() {
+            final ArrayList<Runnable> executeCallbacks;
+            synchronized (Deferred.this) {
+                if (response != null || error != null) {
+                    return false;
+                }
+                cancelled = true;
+                executeCallbacks = new ArrayList<>(cancelCallbacks);
+                cancelCallbacks.clear();
+            }
+            reject(new CancellationException("Request cancelled."));
+            executeCallbacks.forEach(callback -> {
+                try {
+                    callback.run();
+                } catch (final Exception ignore) {}
+            });
+            return true;
+        }
+
+        public boolean isCancelled() {
+            synchronized (Deferred.this) {
+                return cancelled;
+            }
+        }
+
+        public CompletableFuture<RESPONSE> toCompletableFuture() {
+            final CompletableFuture<RESPONSE> future = new CompletableFuture<>();
+            then(future::complete).error(future::completeExceptionally);
+            future.whenComplete((response, error) -> {
+                if (future.isCancelled()) {
+                    cancel();
+                }
+            });
+            return future;
+        }
+
+        public CompletableFuture<RESPONSE> toCompletableFuture(final long time, final TimeUnit unit) {
+            final CompletableFuture<RESPONSE> future = toCompletableFuture();
+            final ScheduledFuture<?> timeout = getTimeoutScheduler().schedule(() -> {
+                if (future.completeExceptionally(new TimeoutException("Request timeout. time:" + time + " unit:" + unit.name()))) {
+                    cancel();
+                }
+            }, time, unit);
+            future.whenComplete((response, error) -> timeout.cancel(false));
+            return future;
+        }
+
         public RESPONSE getResponse() {
             return getResponse(1, TimeUnit.MINUTES);
         }
@@ -150,4 +223,19 @@ public class Deferred<RESPONSE extends Response> {
             }
         }
     }
+
+    private static ScheduledExecutorService getTimeoutScheduler() {
+        if (timeoutScheduler == null) {
+            synchronized (Deferred.class) {
+                if (timeoutScheduler == null) {
+                    timeoutScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                        final Thread thread = new Thread(r, "suggest-timeout");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return timeoutScheduler;
+    }
 }
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2009-2019 the CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.suggest.concurrent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.codelibs.fess.suggest.request.Response;
+
+public class RequestCoalescer<RESPONSE extends Response> {
+    private final Map<String, InFlight> inFlightRequests = new ConcurrentHashMap<>();
+
+    private final AtomicLong leaderCount = new AtomicLong();
+
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    public Deferred<RESPONSE>.Promise execute(final String key, final Supplier<Deferred<RESPONSE>.Promise> supplier) {
+        final InFlight created = new InFlight(key);
+        created.subscribe();
+        while (true) {
+            final InFlight inFlight = inFlightRequests.putIfAbsent(key, created);
+            if (inFlight == null) {
+                break;
+            }
+            if (inFlight.subscribe()) {
+                coalescedCount.incrementAndGet();
+                return inFlight.newPromise();
+            }
+            // every caller of that request has cancelled it
+            inFlightRequests.remove(key, inFlight);
+        }
+
+        leaderCount.incrementAndGet();
+        final Deferred<RESPONSE> deferred = created.deferred;
+        try {
+            created.upstream = supplier.get().then(response -> {
+                inFlightRequests.remove(key, created);
+                deferred.resolve(response);
+            }).error(error -> {
+                inFlightRequests.remove(key, created);
+                deferred.reject(error);
+            });
+        } catch (final RuntimeException e) {
+            inFlightRequests.remove(key, created);
+            deferred.reject(e);
+            throw e;
+        }
+        return created.newPromise();
+    }
+
+    public long getLeaderCount() {
+        return leaderCount.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    public int getInFlightCount() {
+        return inFlightRequests.size();
+    }
+
+    private class InFlight {
+        private final String key;
+
+        private final Deferred<RESPONSE> deferred = new Deferred<>();
+
+        private volatile Deferred<RESPONSE>.Promise upstream;
+
+        private int subscribers = 0;
+
+        private boolean cancelled = false;
+
+        private InFlight(final String key) {
+            this.key = key;
+        }
+
+        private synchronized boolean subscribe() {
+            if (cancelled) {
+                return false;
+            }
+            subscribers++;
+            return true;
+        }
+
+        private Deferred<RESPONSE>.Promise newPromise() {
+            // each caller gets its own promise, so one caller cancelling does not cancel the others.
+            final Deferred<RESPONSE> subscriber = new Deferred<>();
+            deferred.then(subscriber::resolve).error(subscriber::reject);
+            subscriber.onCancel(this::unsubscribe);
+            return subscriber.promise();
+        }
+
+        private void unsubscribe() {
+            synchronized (this) {
+                if (--subscribers > 0) {
+                    return;
+                }
+                cancelled = true;
+            }
+            inFlightRequests.remove(key, this);
+            final Deferred<RESPONSE>.Promise promise = upstream;
+            if (promise != null) {
+                promise.cancel();
+            }
+            deferred.promise().cancel();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2009-2019 the CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.suggest.concurrent;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SuggestThreadPool extends ThreadPoolExecutor {
+    protected final String name;
+    protected final AtomicLong rejectedCount = new AtomicLong(0);
+
+    public SuggestThreadPool(final String name, final int poolSize, final int queueCapacity, final RejectedExecutionHandler handler) {
+        super(poolSize, poolSize, 60, TimeUnit.SECONDS, createQueue(queueCapacity), createThreadFactory(name));
+        this.name = name;
+        setRejectedExecutionHandler((r, executor) -> {
+            rejectedCount.incrementAndGet();
+            handler.rejectedExecution(r, executor);
+        });
+    }
+
+    public static ExecutorService create(final String name, final int poolSize, final int queueCapacity,
+            final RejectedExecutionHandler handler, final boolean virtualThreads) {
+        if (virtualThreads) {
+            // with a thread per task, the tasks that would wait in the queue run at once instead.
+            return new ThreadPerTaskExecutor(name, queueCapacity <= 0 ? Integer.MAX_VALUE : poolSize + queueCapacity, handler);
+        }
+        return new SuggestThreadPool(name, poolSize, queueCapacity, handler);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getQueueDepth() {
+        return getQueue().size();
+    }
+
+    public int getQueueRemainingCapacity() {
+        return getQueue().remainingCapacity();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    protected static BlockingQueue<Runnable> createQueue(final int queueCapacity) {
+        if (queueCapacity <= 0) {
+            return new LinkedBlockingQueue<>();
+        }
+        return new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    protected static ThreadFactory createThreadFactory(final String name) {
+        final AtomicInteger count = new AtomicInteger(0);
+        return r -> {
+            final Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "SuggestThreadPool [name=" + name + ", poolSize=" + getPoolSize() + ", activeCount=" + getActiveCount() + ", queueDepth="
+                + getQueueDepth() + ", completedTaskCount=" + getCompletedTaskCount() + ", rejectedCount=" + getRejectedCount() + "]";
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2009-2019 the CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.suggest.concurrent;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codelibs.fess.suggest.exception.SuggesterException;
+
+public class ThreadPerTaskExecutor extends AbstractExecutorService {
+    protected final String name;
+    protected final ExecutorService delegate;
+    protected final RejectedExecutionHandler handler;
+    protected final int maxTasks;
+    protected final Semaphore taskPermits;
+    protected final AtomicLong completedTaskCount = new AtomicLong(0);
+    protected final AtomicLong rejectedCount = new AtomicLong(0);
+
+    public ThreadPerTaskExecutor(final String name, final int maxTasks, final RejectedExecutionHandler handler) {
+        this(name, maxTasks, handler, createVirtualThreadExecutor(name));
+    }
+
+    protected ThreadPerTaskExecutor(final String name, final int maxTasks, final RejectedExecutionHandler handler,
+            final ExecutorService delegate) {
+        this.name = name;
+        this.delegate = delegate;
+        this.handler = handler;
+        this.maxTasks = maxTasks;
+        this.taskPermits = new Semaphore(maxTasks);
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        if (isShutdown() || !taskPermits.tryAcquire()) {
+            reject(command);
+            return;
+        }
+        try {
+            delegate.execute(() -> {
+                try {
+                    command.run();
+                } finally {
+                    completedTaskCount.incrementAndGet();
+                    taskPermits.release();
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            taskPermits.release();
+            reject(command);
+        } catch (final RuntimeException | Error e) {
+            taskPermits.release();
+            throw e;
+        }
+    }
+
+    protected void reject(final Runnable command) {
+        rejectedCount.incrementAndGet();
+        // there is no queue, so the discard policies drop this task and any other handler fails it.
+        if (handler instanceof ThreadPoolExecutor.CallerRunsPolicy) {
+            if (!isShutdown()) {
+                command.run();
+            }
+        } else if (!(handler instanceof ThreadPoolExecutor.DiscardPolicy) && !(handler instanceof ThreadPoolExecutor.DiscardOldestPolicy)) {
+            throw new RejectedExecutionException("Task " + command + " rejected from " + this);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getActiveCount() {
+        return maxTasks - taskPermits.availablePermits();
+    }
+
+    public int getQueueDepth() {
+        return 0;
+    }
+
+    public int getQueueRemainingCapacity() {
+        return taskPermits.availablePermits();
+    }
+
+    public long getCompletedTaskCount() {
+        return completedTaskCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    protected static ExecutorService createVirtualThreadExecutor(final String name) {
+        // looked up reflectively so that the library still runs on JVMs without virtual threads.
+        try {
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-", 1L);
+            final ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null,
+                    threadFactory);
+        } catch (final Exception e) {
+            throw new SuggesterException("Virtual threads are not available on this JVM.", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ThreadPerTaskExecutor [name=" + name + ", activeCount=" + getActiveCount() + ", completedTaskCount="
+                + getCompletedTaskCount() + ", rejectedCount=" + getRejectedCount() + "]";
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2009-2019 the CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.suggest.concurrent;
+
+import java.util.concurrent.TimeUnit;
+
+public class ThroughputGovernor {
+    protected final TokenBucket docBucket = new TokenBucket();
+    protected final TokenBucket itemBucket = new TokenBucket();
+    protected final TokenBucket byteBucket = new TokenBucket();
+
+    protected double burstSeconds = 1;
+
+    protected boolean adaptive = false;
+    protected long targetLatency = 1000;
+    protected double minRateFactor = 0.1;
+    protected volatile double rateFactor = 1;
+
+    public ThroughputGovernor setDocsPerSecond(final double docsPerSecond) {
+        docBucket.rate = docsPerSecond;
+        return this;
+    }
+
+    public ThroughputGovernor setItemsPerSecond(final double itemsPerSecond) {
+        itemBucket.rate = itemsPerSecond;
+        return this;
+    }
+
+    public ThroughputGovernor setBytesPerSecond(final double bytesPerSecond) {
+        byteBucket.rate = bytesPerSecond;
+        return this;
+    }
+
+    public ThroughputGovernor setBurstSeconds(final double burstSeconds) {
+        this.burstSeconds = burstSeconds;
+        return this;
+    }
+
+    public ThroughputGovernor setAdaptive(final boolean adaptive) {
+        this.adaptive = adaptive;
+        return this;
+    }
+
+    public ThroughputGovernor setTargetLatency(final long targetLatency) {
+        this.targetLatency = targetLatency;
+        return this;
+    }
+
+    public ThroughputGovernor setMinRateFactor(final double minRateFactor) {
+        this.minRateFactor = minRateFactor;
+        return this;
+    }
+
+    public void acquireDocs(final long docs) throws InterruptedException {
+        sleep(docBucket.reserve(docs, rateFactor, burstSeconds));
+    }
+
+    public void acquireItems(final long items) throws InterruptedException {
+        // bulk bytes are only known after a bulk is sent, so they are paid afterwards and delay the next bulk.
+        sleep(Math.max(itemBucket.reserve(items, rateFactor, burstSeconds), byteBucket.reserve(0, rateFactor, burstSeconds)));
+    }
+
+    public void record(final long bytes, final long latency, final int rejections) {
+        byteBucket.reserve(bytes, rateFactor, burstSeconds);
+
+        if (!adaptive) {
+            return;
+        }
+        if (rejections > 0 || latency > targetLatency) {
+            rateFactor = Math.max(minRateFactor, rateFactor / 2);
+        } else if (rateFactor < 1) {
+            rateFactor = Math.min(1, rateFactor + 0.05);
+        }
+    }
+
+    public double getRateFactor() {
+        return rateFactor;
+    }
+
+    protected void sleep(final long nanos) throws InterruptedException {
+        if (nanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        }
+    }
+
+    protected static class TokenBucket {
+        protected volatile double rate = -1;
+        protected double tokens = Double.NaN;
+        protected long lastTime = System.nanoTime();
+
+        protected synchronized long reserve(final long amount, final double rateFactor, final double burstSeconds) {
+            if (rate <= 0) {
+                return 0;
+            }
+            refill(rateFactor, burstSeconds);
+            tokens -= amount;
+            return getDebtNanos(rateFactor);
+        }
+
+        protected long getDebtNanos(final double rateFactor) {
+            if (rate <= 0 || Double.isNaN(tokens) || tokens >= 0) {
+                return 0;
+            }
+            return (long) (-tokens / (rate * rateFactor) * TimeUnit.SECONDS.toNanos(1));
+        }
+
+        protected void refill(final double rateFactor, final double burstSeconds) {
+            final double effectiveRate = rate * rateFactor;
+            final double capacity = effectiveRate * burstSeconds;
+            final long now = System.nanoTime();
+            if (Double.isNaN(tokens)) {
+                tokens = capacity;
+            } else {
+                tokens = Math.min(capacity, tokens + effectiveRate * (now - lastTime) / TimeUnit.SECONDS.toNanos(1));
+            }
+            lastTime = now;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2009-2019 the CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.suggest.engine;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.fess.suggest.entity.SuggestItem;
+import org.codelibs.fess.suggest.exception.SuggesterException;
+import org.codelibs.fess.suggest.settings.SuggestSettings;
+import org.codelibs.fess.suggest.util.SuggestUtil;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+
+public class LocalSuggestEngine {
+    private static final Logger logger = LogManager.getLogger(LocalSuggestEngine.class);
+
+    protected static final String SNAPSHOT_PREFIX = "snapshot-";
+
+    protected static final String BUILDING_PREFIX = "building-";
+
+    protected final Client client;
+
+    protected final SuggestSettings settings;
+
+    protected final String index;
+
+    protected final String type;
+
+    protected final Path baseDir;
+
+    protected final AtomicReference<LocalSuggestIndex> current = new AtomicReference<>();
+
+    protected int maxExpansions = 1000;
+
+    protected int maxCandidates = 10000;
+
+    public LocalSuggestEngine(final Client client, final SuggestSettings settings, final String index, final String type,
+            final Path baseDir) {
+        this.client = client;
+        this.settings = settings;
+        this.index = index;
+        this.type = type;
+        this.baseDir = baseDir;
+    }
+
+    public boolean load() {
+        try {
+            if (!Files.isDirectory(baseDir)) {
+                return false;
+            }
+            final Optional<Path> latest;
+            try (Stream<Path> paths = Files.list(baseDir)) {
+                latest = paths.filter(path -> isSnapshotName(path.getFileName().toString()))
+                        .filter(path -> Files.exists(path.resolve(LocalSuggestIndex.DATA_FILE_NAME)))
+                        .max(Comparator.comparing(path -> path.getFileName().toString()));
+            }
+            if (!latest.isPresent()) {
+                return false;
+            }
+            swap(LocalSuggestIndex.open(latest.get()));
+            return true;
+        } catch (final IOException e) {
+            throw new SuggesterException("Failed to load a local suggest index from " + baseDir, e);
+        }
+    }
+
+    public synchronized void rebuild() {
+        Path dir = null;
+        String scrollId = null;
+        try {
+            Files.createDirectories(baseDir);
+            dir = Files.createTempDirectory(baseDir, BUILDING_PREFIX);
+
+            String indexName = index;
+            try (LocalSuggestIndex.Writer writer = LocalSuggestIndex.writer(dir)) {
+                SearchResponse response = client.prepareSearch(index).setTypes(type).setSize(1000).setScroll(settings.getScrollTimeout())
+                        .setQuery(QueryBuilders.matchAllQuery()).execute().actionGet(settings.getSearchTimeout());
+                scrollId = response.getScrollId();
+                while (response.getHits().getHits().length > 0) {
+                    for (final SearchHit hit : response.getHits().getHits()) {
+                        indexName = hit.getIndex();
+                        writer.add(SuggestItem.parseSource(hit.getSourceAsMap()));
+                    }
+                    response = client.prepareSearchScroll(scrollId).setScroll(settings.getScrollTimeout()).execute()
+                            .actionGet(settings.getSearchTimeout());
+                    scrollId = response.getScrollId();
+                }
+                writer.finish(indexName);
+            }
+
+            final Path snapshotDir = commit(dir);
+            dir = null;
+            swap(LocalSuggestIndex.open(snapshotDir));
+        } catch (final Exception e) {
+            if (dir != null) {
+                LocalSuggestIndex.deleteDir(dir);
+            }
+            throw new SuggesterException("Failed to build a local suggest index.", e);
+        } finally {
+            try {
+                SuggestUtil.clearScroll(client, settings, scrollId);
+            } catch (final Exception e) {
+                logger.warn("Failed to clear the scroll context: " + scrollId, e);
+            }
+        }
+    }
+
+    protected Path commit(final Path dir) throws IOException {
+        long generation = System.currentTimeMillis();
+        while (true) {
+            final Path snapshotDir = baseDir.resolve(createSnapshotName(generation));
+            if (!Files.exists(snapshotDir)) {
+                try {
+                    return Files.move(dir, snapshotDir, StandardCopyOption.ATOMIC_MOVE);
+                } catch (final FileAlreadyExistsException e) {
+                    // committed by another process
+                }
+            }
+            generation++;
+        }
+    }
+
+    protected static String createSnapshotName(final long generation) {
+        return SNAPSHOT_PREFIX + String.format("%020d", generation);
+    }
+
+    protected static boolean isSnapshotName(final String name) {
+        if (!name.startsWith(SNAPSHOT_PREFIX) || name.length() != SNAPSHOT_PREFIX.length() + 20) {
+            return false;
+        }
+        for (int i = SNAPSHOT_PREFIX.length(); i < name.length(); i++) {
+            if (!Character.isDigit(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected void swap(final LocalSuggestIndex localSuggestIndex) {
+        final LocalSuggestIndex old = current.getAndSet(localSuggestIndex);
+        if (old != null) {
+            old.release(!old.getDir().equals(localSuggestIndex.getDir()));
+        }
+    }
+
+    public boolean isAvailable() {
+        return current.get() != null;
+    }
+
+    public LocalSuggestResult search(final List<List<String>> readings, final boolean prefixQuery, final String boostPrefix,
+            final float boostWeight, final int size, final List<String> tags, final List<String> roles, final List<String> fields,
+            final List<String> kinds) {
+        final LocalSuggestIndex localSuggestIndex = acquire();
+        try {
+            return localSuggestIndex.search(readings, prefixQuery, boostPrefix, boostWeight, size, tags, roles, fields, kinds,
+                    settings.badword().getMatcher(), maxExpansions, maxCandidates);
+        } catch (final IOException e) {
+            throw new SuggesterException("Failed to search a local suggest index.", e);
+        } finally {
+            localSuggestIndex.decRef();
+        }
+    }
+
+    protected LocalSuggestIndex acquire() {
+        while (true) {
+            final LocalSuggestIndex localSuggestIndex = current.get();
+            if (localSuggestIndex == null) {
+                throw new SuggesterException("Local suggest index is not available.");
+            }
+            if (localSuggestIndex.tryIncRef()) {
+                return localSuggestIndex;
+            }
+        }
+    }
+
+    public int getItemNum() {
+        final LocalSuggestIndex localSuggestIndex = current.get();
+        return localSuggestIndex == null ? 0 : localSuggestIndex.getItemNum();
+    }
+
+    public LocalSuggestEngine setMaxExpansions(final int maxExpansions) {
+        this.maxExpansions = maxExpansions;
+        return this;
+    }
+
+    public LocalSuggestEngine setMaxCandidates(final int maxCandidates) {
+        this.maxCandidates = maxCandidates;
+        return this;
+    }
+}
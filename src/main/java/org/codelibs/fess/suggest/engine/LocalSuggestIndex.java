@@ -0,0 +1,618 @@
+/*
+ * Copyright 2009-2019 the CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.suggest.engine;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.apache.lucene.util.BytesRef;
+import org.codelibs.core.CoreLibConstants;
+import org.codelibs.fess.suggest.entity.SuggestItem;
+import org.codelibs.fess.suggest.exception.SuggesterException;
+import org.codelibs.fess.suggest.util.BadWordMatcher;
+
+public class LocalSuggestIndex {
+    protected static final String DATA_FILE_NAME = "items.dat";
+
+    protected static final String ENTRIES_TEMP_FILE_NAME = "entries.tmp";
+
+    protected static final int VERSION = 2;
+
+    protected final Path dir;
+
+    protected final String indexName;
+
+    protected final ByteBuffer data;
+
+    protected final int entryNum;
+
+    protected final int keyNum;
+
+    protected final int entryOffsetsStart;
+
+    protected final int postingOffsetsStart;
+
+    protected final int keyOffsetsStart;
+
+    protected final int entriesStart;
+
+    protected final int postingsStart;
+
+    protected final int keysStart;
+
+    protected final AtomicInteger refCount = new AtomicInteger(1);
+
+    protected volatile boolean deleteOnRelease = false;
+
+    protected LocalSuggestIndex(final Path dir, final ByteBuffer data) {
+        this.dir = dir;
+        this.data = data;
+
+        final ByteBuffer buf = data.duplicate();
+        final int version = buf.getInt();
+        if (version != VERSION) {
+            throw new SuggesterException("Unsupported local suggest index version:" + version);
+        }
+        this.entryNum = buf.getInt();
+        this.keyNum = buf.getInt();
+        this.entriesStart = buf.getInt();
+        this.postingsStart = buf.getInt();
+        this.keysStart = buf.getInt();
+        this.indexName = readString(buf);
+        this.entryOffsetsStart = buf.position();
+        this.postingOffsetsStart = entryOffsetsStart + entryNum * 4;
+        this.keyOffsetsStart = postingOffsetsStart + keyNum * 4;
+    }
+
+    public static LocalSuggestIndex open(final Path dir) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir.resolve(DATA_FILE_NAME), StandardOpenOption.READ)) {
+            return new LocalSuggestIndex(dir, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public static Writer writer(final Path dir) throws IOException {
+        return new Writer(dir);
+    }
+
+    public static void write(final Path dir, final String indexName, final List<SuggestItem> items) throws IOException {
+        try (Writer writer = writer(dir)) {
+            for (final SuggestItem item : items) {
+                writer.add(item);
+            }
+            writer.finish(indexName);
+        }
+    }
+
+    public LocalSuggestResult search(final List<List<String>> readings, final boolean prefixQuery, final String boostPrefix,
+            final float boostWeight, final int size, final List<String> tags, final List<String> roles, final List<String> fields,
+            final List<String> kinds, final BadWordMatcher badWordMatcher, final int maxExpansions, final int maxCandidates)
+            throws IOException {
+        final long start = System.currentTimeMillis();
+        final PriorityQueue<ScoredEntry> queue = new PriorityQueue<>(size + 1, ScoredEntry.COMPARATOR);
+        long total = 0;
+
+        final BitSet candidates;
+        if (readings.isEmpty()) {
+            candidates = new BitSet(entryNum);
+            candidates.set(0, Math.min(entryNum, maxCandidates));
+        } else {
+            candidates = findCandidates(readings.size() - 1, readings.get(readings.size() - 1), prefixQuery, maxExpansions, maxCandidates);
+        }
+
+        for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+            final Entry entry = readEntry(id);
+            if (!entry.matches(readings, tags, roles, fields, kinds)) {
+                continue;
+            }
+            if (badWordMatcher != null && badWordMatcher.matches(entry.text)) {
+                // the snapshot may predate the bad word.
+                continue;
+            }
+            total++;
+
+            float score = entry.baseScore;
+            if (boostPrefix != null && entry.text.startsWith(boostPrefix)) {
+                score *= boostWeight;
+            }
+            queue.offer(new ScoredEntry(entry, score));
+            if (queue.size() > size) {
+                queue.poll();
+            }
+        }
+
+        final List<SuggestItem> items = new ArrayList<>(queue.size());
+        while (!queue.isEmpty()) {
+            items.add(0, queue.poll().entry.toSuggestItem());
+        }
+        return new LocalSuggestResult(indexName, System.currentTimeMillis() - start, total, items);
+    }
+
+    protected BitSet findCandidates(final int pos, final List<String> readings, final boolean prefixQuery, final int maxExpansions,
+            final int maxCandidates) throws IOException {
+        final BitSet candidates = new BitSet(entryNum);
+
+        int expansions = 0;
+        int count = 0;
+        for (final String reading : readings) {
+            final BytesRef key = createKey(pos, reading);
+            if (prefixQuery) {
+                for (int ord = seekCeil(key); ord < keyNum && startsWith(ord, key) && expansions < maxExpansions
+                        && count < maxCandidates; ord++) {
+                    count = addPosting(candidates, count, ord, maxCandidates);
+                    expansions++;
+                }
+            } else {
+                final int ord = seekCeil(key);
+                if (ord < keyNum && compareKey(ord, key) == 0) {
+                    count = addPosting(candidates, count, ord, maxCandidates);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    protected int seekCeil(final BytesRef key) {
+        int low = 0;
+        int high = keyNum - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int cmp = compareKey(mid, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return low;
+    }
+
+    protected int compareKey(final int ord, final BytesRef key) {
+        final int offset = keysStart + data.getInt(keyOffsetsStart + ord * 4);
+        final int length = data.getInt(offset);
+        final int len = Math.min(length, key.length);
+        for (int i = 0; i < len; i++) {
+            final int cmp = (data.get(offset + 4 + i) & 0xff) - (key.bytes[key.offset + i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - key.length;
+    }
+
+    protected boolean startsWith(final int ord, final BytesRef prefix) {
+        final int offset = keysStart + data.getInt(keyOffsetsStart + ord * 4);
+        if (data.getInt(offset) < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data.get(offset + 4 + i) != prefix.bytes[prefix.offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected int addPosting(final BitSet candidates, final int count, final int ord, final int maxCandidates) {
+        int offset = postingsStart + data.getInt(postingOffsetsStart + ord * 4);
+        final int num = data.getInt(offset);
+        int newCount = count;
+        for (int i = 0; i < num && newCount < maxCandidates; i++) {
+            offset += 4;
+            final int id = data.getInt(offset);
+            if (!candidates.get(id)) {
+                candidates.set(id);
+                newCount++;
+            }
+        }
+        return newCount;
+    }
+
+    protected Entry readEntry(final int id) {
+        final ByteBuffer buf = data.duplicate();
+        buf.position(entriesStart + data.getInt(entryOffsetsStart + id * 4));
+        final Entry entry = new Entry();
+        entry.baseScore = buf.getFloat();
+        entry.docFreq = buf.getLong();
+        entry.queryFreq = buf.getLong();
+        entry.userBoost = buf.getFloat();
+        entry.timestamp = buf.getLong();
+        entry.text = readString(buf);
+        entry.readings = new String[buf.getInt()][];
+        for (int i = 0; i < entry.readings.length; i++) {
+            entry.readings[i] = readStringArray(buf);
+        }
+        entry.fields = readStringArray(buf);
+        entry.tags = readStringArray(buf);
+        entry.roles = readStringArray(buf);
+        entry.languages = readStringArray(buf);
+        entry.kinds = readStringArray(buf);
+        return entry;
+    }
+
+    public String getIndexName() {
+        return indexName;
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    public int getItemNum() {
+        return entryNum;
+    }
+
+    public boolean tryIncRef() {
+        while (true) {
+            final int count = refCount.get();
+            if (count <= 0) {
+                return false;
+            }
+            if (refCount.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void decRef() {
+        if (refCount.decrementAndGet() == 0 && deleteOnRelease) {
+            deleteDir(dir);
+        }
+    }
+
+    public void release(final boolean delete) {
+        deleteOnRelease = delete;
+        decRef();
+    }
+
+    protected static void deleteDir(final Path dir) {
+        try (Stream<Path> paths = Files.list(dir)) {
+            paths.forEach(path -> path.toFile().delete());
+        } catch (final IOException ignore) {}
+        dir.toFile().delete();
+    }
+
+    protected static float getBaseScore(final SuggestItem item) {
+        return (float) (Math.log10(item.getDocFreq() + 2) * Math.log10(item.getQueryFreq() + 2) * item.getUserBoost());
+    }
+
+    protected static BytesRef createKey(final int pos, final String reading) {
+        final byte[] readingBytes = reading.getBytes(CoreLibConstants.CHARSET_UTF_8);
+        final byte[] bytes = new byte[readingBytes.length + 1];
+        bytes[0] = (byte) pos;
+        System.arraycopy(readingBytes, 0, bytes, 1, readingBytes.length);
+        return new BytesRef(bytes);
+    }
+
+    protected static void writeEntry(final DataOutputStream out, final SuggestItem item) throws IOException {
+        out.writeFloat(getBaseScore(item));
+        out.writeLong(item.getDocFreq());
+        out.writeLong(item.getQueryFreq());
+        out.writeFloat(item.getUserBoost());
+        out.writeLong(item.getTimestampMillis());
+        writeString(out, item.getText());
+        out.writeInt(item.getReadings().length);
+        for (final String[] reading : item.getReadings()) {
+            writeStringArray(out, reading);
+        }
+        writeStringArray(out, item.getFields());
+        writeStringArray(out, item.getTags());
+        writeStringArray(out, item.getRoles());
+        writeStringArray(out, item.getLanguages());
+        writeStringArray(out, Stream.of(item.getKinds()).map(SuggestItem.Kind::toString).toArray(n -> new String[n]));
+    }
+
+    protected static void writeString(final DataOutputStream out, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(CoreLibConstants.CHARSET_UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    protected static void writeStringArray(final DataOutputStream out, final String[] values) throws IOException {
+        out.writeInt(values.length);
+        for (final String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    protected static String readString(final ByteBuffer buf) {
+        final byte[] bytes = new byte[buf.getInt()];
+        buf.get(bytes);
+        return new String(bytes, CoreLibConstants.CHARSET_UTF_8);
+    }
+
+    protected static String[] readStringArray(final ByteBuffer buf) {
+        final String[] values = new String[buf.getInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readString(buf);
+        }
+        return values;
+    }
+
+    protected static boolean containsAny(final String[] values, final List<String> targets) {
+        for (final String value : values) {
+            if (targets.contains(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static class Writer implements Closeable {
+        protected final Path dir;
+
+        protected final Path entriesPath;
+
+        protected final DataOutputStream entryOut;
+
+        protected final TreeMap<BytesRef, IntList> postings = new TreeMap<>();
+
+        protected int[] entryOffsets = new int[1024];
+
+        protected float[] scores = new float[1024];
+
+        protected int entryNum = 0;
+
+        protected boolean closed = false;
+
+        protected Writer(final Path dir) throws IOException {
+            this.dir = dir;
+            this.entriesPath = dir.resolve(ENTRIES_TEMP_FILE_NAME);
+            this.entryOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(entriesPath)));
+        }
+
+        public Writer add(final SuggestItem item) throws IOException {
+            if (entryNum == entryOffsets.length) {
+                entryOffsets = Arrays.copyOf(entryOffsets, entryNum * 2);
+                scores = Arrays.copyOf(scores, entryNum * 2);
+            }
+            final int id = entryNum++;
+            entryOffsets[id] = entryOut.size();
+            scores[id] = getBaseScore(item);
+            writeEntry(entryOut, item);
+            if (entryOut.size() == Integer.MAX_VALUE) {
+                throw new SuggesterException("Local suggest index is too large.");
+            }
+
+            final String[][] readings = item.getReadings();
+            for (int pos = 0; pos < readings.length; pos++) {
+                for (final String reading : readings[pos]) {
+                    postings.computeIfAbsent(createKey(pos, reading), key -> new IntList()).addUnique(id);
+                }
+            }
+            return this;
+        }
+
+        public void finish(final String indexName) throws IOException {
+            closeEntries();
+            final int entriesSize = entryOut.size();
+
+            final long[] order = new long[entryNum];
+            for (int id = 0; id < entryNum; id++) {
+                final int bits = Float.floatToIntBits(Math.max(0f, scores[id]));
+                order[id] = ((long) (Integer.MAX_VALUE - bits) << 32) | id;
+            }
+            Arrays.sort(order);
+            final int[] newIds = new int[entryNum];
+            for (int i = 0; i < entryNum; i++) {
+                newIds[(int) order[i]] = i;
+            }
+
+            final byte[] indexNameBytes = indexName.getBytes(CoreLibConstants.CHARSET_UTF_8);
+            long postingsSize = 0;
+            long keysSize = 0;
+            for (final Map.Entry<BytesRef, IntList> entry : postings.entrySet()) {
+                postingsSize += 4 + 4L * entry.getValue().size;
+                keysSize += 4 + entry.getKey().length;
+            }
+            final long entriesStart = 24L + 4 + indexNameBytes.length + 4L * entryNum + 8L * postings.size();
+            final long postingsStart = entriesStart + entriesSize;
+            final long keysStart = postingsStart + postingsSize;
+            if (keysStart + keysSize > Integer.MAX_VALUE) {
+                throw new SuggesterException("Local suggest index is too large.");
+            }
+
+            final Path dataPath = dir.resolve(DATA_FILE_NAME);
+            try (FileChannel channel = FileChannel.open(entriesPath, StandardOpenOption.READ);
+                    OutputStream os = Files.newOutputStream(dataPath);
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+                out.writeInt(VERSION);
+                out.writeInt(entryNum);
+                out.writeInt(postings.size());
+                out.writeInt((int) entriesStart);
+                out.writeInt((int) postingsStart);
+                out.writeInt((int) keysStart);
+                out.writeInt(indexNameBytes.length);
+                out.write(indexNameBytes);
+
+                int offset = 0;
+                for (int i = 0; i < entryNum; i++) {
+                    out.writeInt(offset);
+                    offset += getEntryLength((int) order[i], entriesSize);
+                }
+                offset = 0;
+                for (final IntList ids : postings.values()) {
+                    out.writeInt(offset);
+                    offset += 4 + 4 * ids.size;
+                }
+                offset = 0;
+                for (final BytesRef key : postings.keySet()) {
+                    out.writeInt(offset);
+                    offset += 4 + key.length;
+                }
+
+                final ByteBuffer entries = channel.map(FileChannel.MapMode.READ_ONLY, 0, entriesSize);
+                final byte[] buffer = new byte[8192];
+                for (int i = 0; i < entryNum; i++) {
+                    final int id = (int) order[i];
+                    final ByteBuffer buf = entries.duplicate();
+                    buf.position(entryOffsets[id]);
+                    int remaining = getEntryLength(id, entriesSize);
+                    while (remaining > 0) {
+                        final int length = Math.min(remaining, buffer.length);
+                        buf.get(buffer, 0, length);
+                        out.write(buffer, 0, length);
+                        remaining -= length;
+                    }
+                }
+                for (final IntList ids : postings.values()) {
+                    final int[] values = ids.remap(newIds);
+                    out.writeInt(values.length);
+                    for (final int value : values) {
+                        out.writeInt(value);
+                    }
+                }
+                for (final BytesRef key : postings.keySet()) {
+                    out.writeInt(key.length);
+                    out.write(key.bytes, key.offset, key.length);
+                }
+            }
+            try (FileChannel channel = FileChannel.open(dataPath, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+        }
+
+        protected int getEntryLength(final int id, final int entriesSize) {
+            return (id + 1 < entryNum ? entryOffsets[id + 1] : entriesSize) - entryOffsets[id];
+        }
+
+        protected void closeEntries() throws IOException {
+            if (!closed) {
+                closed = true;
+                entryOut.close();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                closeEntries();
+            } finally {
+                Files.deleteIfExists(entriesPath);
+            }
+        }
+    }
+
+    protected static class IntList {
+        protected int[] values = new int[2];
+
+        protected int size = 0;
+
+        protected void addUnique(final int value) {
+            if (size > 0 && values[size - 1] == value) {
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        protected int[] remap(final int[] newIds) {
+            final int[] result = new int[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = newIds[values[i]];
+            }
+            Arrays.sort(result);
+            return result;
+        }
+    }
+
+    protected static class Entry {
+        protected float baseScore;
+        protected long docFreq;
+        protected long queryFreq;
+        protected float userBoost;
+        protected long timestamp;
+        protected String text;
+        protected String[][] readings;
+        protected String[] fields;
+        protected String[] tags;
+        protected String[] roles;
+        protected String[] languages;
+        protected String[] kinds;
+
+        protected boolean matches(final List<List<String>> queryReadings, final List<String> tags, final List<String> roles,
+                final List<String> fields, final List<String> kinds) {
+            for (int i = 0; i < queryReadings.size() - 1; i++) {
+                if (readings.length <= i || !containsAny(readings[i], queryReadings.get(i))) {
+                    return false;
+                }
+            }
+            if (!tags.isEmpty() && !containsAny(this.tags, tags)) {
+                return false;
+            }
+            if (!roles.isEmpty() && !containsAny(this.roles, roles)) {
+                return false;
+            }
+            if (!fields.isEmpty() && !containsAny(this.fields, fields)) {
+                return false;
+            }
+            if (!kinds.isEmpty() && !containsAny(this.kinds, kinds)) {
+                return false;
+            }
+            return true;
+        }
+
+        protected SuggestItem toSuggestItem() {
+            final SuggestItem item = new SuggestItem(new String[] { text }, readings, fields, docFreq, queryFreq, userBoost, tags, roles,
+                    languages, SuggestItem.Kind.DOCUMENT);
+            item.setKinds(Stream.of(kinds).map(kind -> {
+                for (final SuggestItem.Kind value : SuggestItem.Kind.values()) {
+                    if (value.toString().equals(kind)) {
+                        return value;
+                    }
+                }
+                return null;
+            }).filter(kind -> kind != null).toArray(n -> new SuggestItem.Kind[n]));
+            item.setTimestampMillis(timestamp);
+            return item;
+        }
+    }
+
+    protected static class ScoredEntry {
+        protected static final Comparator<ScoredEntry> COMPARATOR =
+                Comparator.<ScoredEntry> comparingDouble(e -> e.score).thenComparing(e -> e.entry.text, Comparator.reverseOrder());
+
+        protected final Entry entry;
+
+        protected final float score;
+
+        protected ScoredEntry(final Entry entry, final float score) {
+            this.entry = entry;
+            this.score = score;
+        }
+    }
+}
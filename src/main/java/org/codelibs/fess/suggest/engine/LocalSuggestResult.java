@@ -0,0 +1,53 @@
+/*
+ * Copyright 2009-2019 the CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.suggest.engine;
+
+import java.util.List;
+
+import org.codelibs.fess.suggest.entity.SuggestItem;
+
+public class LocalSuggestResult {
+    protected final String index;
+
+    protected final long tookMs;
+
+    protected final long total;
+
+    protected final List<SuggestItem> items;
+
+    public LocalSuggestResult(final String index, final long tookMs, final long total, final List<SuggestItem> items) {
+        this.index = index;
+        this.tookMs = tookMs;
+        this.total = total;
+        this.items = items;
+    }
+
+    public String getIndex() {
+        return index;
+    }
+
+    public long getTookMs() {
+        return tookMs;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public List<SuggestItem> getItems() {
+        return items;
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.codelibs.fess.suggest.entity;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.time.Clock;
 import java.time.Instant;
@@ -25,23 +26,36 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Stream;
 
 import org.codelibs.core.lang.StringUtil;
 import org.codelibs.fess.suggest.constants.FieldNames;
 import org.codelibs.fess.suggest.constants.SuggestConstants;
+import org.codelibs.fess.suggest.util.BadWordMatcher;
 import org.codelibs.fess.suggest.util.SuggestUtil;
 import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.xcontent.XContentBuilder;
 
 public class SuggestItem implements Serializable {
 
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
+
+    private static final String[] EMPTY_STRINGS = new String[0];
+
+    private static final String[] DEFAULT_ROLES = new String[] { SuggestConstants.DEFAULT_ROLE };
+
+    private static final int MAX_INTERNED_VALUES = 10000;
+
+    private static final Map<String, String> internedValues = new ConcurrentHashMap<>();
 
     public enum Kind {
         DOCUMENT("document"), QUERY("query"), USER("user");
 
         private final String kind;
 
+        private final Kind[] singleton = new Kind[] { this };
+
         Kind(final String kind) {
             this.kind = kind;
         }
@@ -54,7 +68,7 @@ public class SuggestItem implements Serializable {
 
     private String text;
 
-    private ZonedDateTime timestamp;
+    private long timestamp;
 
     private long queryFreq;
 
@@ -84,21 +98,20 @@ public class SuggestItem implements Serializable {
     public SuggestItem(final String[] text, final String[][] readings, final String[] fields, final long docFreq, final long queryFreq,
             final float userBoost, @Nullable final String[] tags, @Nullable final String[] roles, @Nullable final String[] languages,
             final Kind kind) {
-        this.text = String.join(SuggestConstants.TEXT_SEPARATOR, text);
+        this.text = text.length == 1 ? text[0] : String.join(SuggestConstants.TEXT_SEPARATOR, text);
         this.readings = readings;
-        this.fields = fields != null ? fields : new String[] {};
-        this.tags = tags != null ? tags : new String[] {};
+        this.fields = intern(fields);
+        this.tags = intern(tags);
 
         if (roles == null || roles.length == 0) {
-            this.roles = new String[] { SuggestConstants.DEFAULT_ROLE };
+            this.roles = DEFAULT_ROLES;
         } else {
-            this.roles = new String[roles.length];
-            System.arraycopy(roles, 0, this.roles, 0, roles.length);
+            this.roles = intern(roles);
         }
 
-        this.languages = languages != null ? languages : new String[] {};
+        this.languages = intern(languages);
 
-        this.kinds = new Kind[] { kind };
+        this.kinds = kind.singleton;
         if (userBoost > 1) {
             this.userBoost = userBoost;
         } else {
@@ -106,9 +119,7 @@ public class SuggestItem implements Serializable {
         }
         this.docFreq = docFreq;
         this.queryFreq = queryFreq;
-        this.timestamp = ZonedDateTime.now();
-        this.emptySource = createEmptyMap();
-        this.id = SuggestUtil.createSuggestTextId(this.text);
+        this.timestamp = System.currentTimeMillis();
     }
 
     public String getText() {
@@ -124,7 +135,8 @@ public class SuggestItem implements Serializable {
     }
 
     public String[] getRoles() {
-        return roles;
+        // DEFAULT_ROLES is shared by all items
+        return roles == null ? null : roles.clone();
     }
 
     public String[] getLanguages() {
@@ -136,7 +148,8 @@ public class SuggestItem implements Serializable {
     }
 
     public Kind[] getKinds() {
-        return kinds;
+        // Kind.singleton is shared by all items
+        return kinds == null ? null : kinds.clone();
     }
 
     public long getQueryFreq() {
@@ -152,6 +165,10 @@ public class SuggestItem implements Serializable {
     }
 
     public ZonedDateTime getTimestamp() {
+        return ZonedDateTime.ofInstant(Instant.ofEpochMilli(timestamp), Clock.systemDefaultZone().getZone());
+    }
+
+    public long getTimestampMillis() {
         return timestamp;
     }
 
@@ -160,6 +177,10 @@ public class SuggestItem implements Serializable {
     }
 
     public void setTimestamp(final ZonedDateTime timestamp) {
+        this.timestamp = timestamp.toInstant().toEpochMilli();
+    }
+
+    public void setTimestampMillis(final long timestamp) {
         this.timestamp = timestamp;
     }
 
@@ -208,6 +229,9 @@ public class SuggestItem implements Serializable {
     }
 
     public Map<String, Object> toEmptyMap() {
+        if (emptySource == null) {
+            emptySource = createEmptyMap();
+        }
         return emptySource;
     }
 
@@ -233,6 +257,9 @@ public class SuggestItem implements Serializable {
     }
 
     public String getId() {
+        if (id == null) {
+            id = SuggestUtil.createSuggestTextId(text);
+        }
         return id;
     }
 
@@ -253,10 +280,97 @@ public class SuggestItem implements Serializable {
         map.put(FieldNames.DOC_FREQ, docFreq);
         map.put(FieldNames.USER_BOOST, userBoost);
         map.put(FieldNames.SCORE, (queryFreq + docFreq) * userBoost);
-        map.put(FieldNames.TIMESTAMP, timestamp.toInstant().toEpochMilli());
+        map.put(FieldNames.TIMESTAMP, timestamp);
         return map;
     }
 
+    public XContentBuilder toXContent(final XContentBuilder builder) throws IOException {
+        return toXContent(builder, null);
+    }
+
+    public XContentBuilder toXContent(final XContentBuilder builder, @Nullable final Map<String, Object> existingSource)
+            throws IOException {
+        builder.startObject();
+        builder.field(FieldNames.TEXT, text);
+        for (int i = 0; i < readings.length; i++) {
+            final String name = FieldNames.READING_PREFIX + i;
+            builder.array(name, mergeExistingValues(existingSource, name, readings[i]));
+        }
+        builder.array(FieldNames.FIELDS, mergeExistingValues(existingSource, FieldNames.FIELDS, fields));
+        builder.array(FieldNames.TAGS, mergeExistingValues(existingSource, FieldNames.TAGS, tags));
+        builder.array(FieldNames.ROLES, mergeExistingValues(existingSource, FieldNames.ROLES, roles));
+        builder.array(FieldNames.LANGUAGES, mergeExistingValues(existingSource, FieldNames.LANGUAGES, languages));
+        final String[] kindNames = new String[kinds.length];
+        for (int i = 0; i < kinds.length; i++) {
+            kindNames[i] = kinds[i].toString();
+        }
+        builder.array(FieldNames.KINDS, mergeExistingValues(existingSource, FieldNames.KINDS, kindNames));
+
+        final long updatedQueryFreq = queryFreq + getLongValue(existingSource, FieldNames.QUERY_FREQ);
+        final long updatedDocFreq = docFreq + getLongValue(existingSource, FieldNames.DOC_FREQ);
+        builder.field(FieldNames.QUERY_FREQ, updatedQueryFreq);
+        builder.field(FieldNames.DOC_FREQ, updatedDocFreq);
+        builder.field(FieldNames.USER_BOOST, userBoost);
+        builder.field(FieldNames.SCORE, (updatedQueryFreq + updatedDocFreq) * userBoost);
+        builder.field(FieldNames.TIMESTAMP, timestamp);
+        return builder.endObject();
+    }
+
+    protected static String[] mergeExistingValues(final Map<String, Object> existingSource, final String name, final String[] values) {
+        if (existingSource == null) {
+            return values;
+        }
+        final Object existingObj = existingSource.get(name);
+        if (!(existingObj instanceof List)) {
+            return values;
+        }
+        @SuppressWarnings("unchecked")
+        final List<String> existingValues = new ArrayList<>((List<String>) existingObj);
+        concatValues(existingValues, values);
+        return existingValues.toArray(new String[existingValues.size()]);
+    }
+
+    protected static long getLongValue(final Map<String, Object> existingSource, final String name) {
+        if (existingSource == null) {
+            return 0;
+        }
+        final Object value = existingSource.get(name);
+        return value == null ? 0 : Long.parseLong(value.toString());
+    }
+
+    protected static String[] intern(final String[] values) {
+        if (values == null || values.length == 0) {
+            return EMPTY_STRINGS;
+        }
+        String[] interned = values;
+        for (int i = 0; i < values.length; i++) {
+            final String value = intern(values[i]);
+            if (value != values[i]) {
+                if (interned == values) {
+                    interned = values.clone();
+                }
+                interned[i] = value;
+            }
+        }
+        return interned;
+    }
+
+    protected static String intern(final String value) {
+        if (value == null) {
+            return null;
+        }
+        final String interned = internedValues.get(value);
+        if (interned != null) {
+            return interned;
+        }
+        if (internedValues.size() >= MAX_INTERNED_VALUES) {
+            // tags, roles and fields take few distinct values, so the table is only reset when unrelated values flood it.
+            internedValues.clear();
+        }
+        final String previous = internedValues.putIfAbsent(value, value);
+        return previous != null ? previous : value;
+    }
+
     public static SuggestItem parseSource(final Map<String, Object> source) {
         final String text = source.get(FieldNames.TEXT).toString();
         final List<String[]> readings = new ArrayList<>();
@@ -302,8 +416,7 @@ public class SuggestItem implements Serializable {
             }
         }
 
-        item.id = SuggestUtil.createSuggestTextId(item.text);
-        item.timestamp = ZonedDateTime.ofInstant(Instant.ofEpochMilli(timestamp), Clock.systemDefaultZone().getZone());
+        item.timestamp = timestamp;
         return item;
     }
 
@@ -395,7 +508,7 @@ public class SuggestItem implements Serializable {
 
         map.put(FieldNames.USER_BOOST, userBoost);
         map.put(FieldNames.SCORE, (updatedQueryFreq + updatedDocFreq) * userBoost);
-        map.put(FieldNames.TIMESTAMP, timestamp.toInstant().toEpochMilli());
+        map.put(FieldNames.TIMESTAMP, timestamp);
         return map;
     }
 
@@ -424,6 +537,23 @@ public class SuggestItem implements Serializable {
         return list.toArray(new Kind[list.size()]);
     }
 
+    protected static String[] mergeValues(final String[] values1, final String[] values2) {
+        List<String> list = null;
+        for (final String value : values2) {
+            if (list == null) {
+                if (Arrays.asList(values1).contains(value)) {
+                    continue;
+                }
+                list = new ArrayList<>(values1.length + values2.length);
+                list.addAll(Arrays.asList(values1));
+            }
+            if (!list.contains(value)) {
+                list.add(value);
+            }
+        }
+        return list == null ? values1 : list.toArray(new String[list.size()]);
+    }
+
     public static SuggestItem merge(final SuggestItem item1, final SuggestItem item2) {
         if (!item1.getId().equals(item2.getId())) {
             throw new IllegalArgumentException("Item id is mismatch.");
@@ -452,49 +582,10 @@ public class SuggestItem implements Serializable {
             mergedItem.readings[i] = list.toArray(new String[list.size()]);
         }
 
-        final List<String> fieldList = new ArrayList<>(item1.getFields().length + item2.getFields().length);
-        for (final String field : item1.getFields()) {
-            fieldList.add(field);
-        }
-        for (final String field : item2.getFields()) {
-            if (!fieldList.contains(field)) {
-                fieldList.add(field);
-            }
-        }
-        mergedItem.fields = fieldList.toArray(new String[fieldList.size()]);
-
-        final List<String> tagList = new ArrayList<>(item1.getTags().length + item2.getTags().length);
-        for (final String tag : item1.getTags()) {
-            tagList.add(tag);
-        }
-        for (final String tag : item2.getTags()) {
-            if (!tagList.contains(tag)) {
-                tagList.add(tag);
-            }
-        }
-        mergedItem.tags = tagList.toArray(new String[tagList.size()]);
-
-        final List<String> langList = new ArrayList<>(item1.getLanguages().length + item2.getLanguages().length);
-        for (final String lang : item1.getLanguages()) {
-            langList.add(lang);
-        }
-        for (final String lang : item2.getLanguages()) {
-            if (!langList.contains(lang)) {
-                langList.add(lang);
-            }
-        }
-        mergedItem.languages = langList.toArray(new String[langList.size()]);
-
-        final List<String> roleList = new ArrayList<>(item1.getRoles().length + item2.getRoles().length);
-        for (final String role : item1.getRoles()) {
-            roleList.add(role);
-        }
-        for (final String role : item2.getRoles()) {
-            if (!roleList.contains(role)) {
-                roleList.add(role);
-            }
-        }
-        mergedItem.roles = roleList.toArray(new String[roleList.size()]);
+        mergedItem.fields = mergeValues(item1.getFields(), item2.getFields());
+        mergedItem.tags = mergeValues(item1.getTags(), item2.getTags());
+        mergedItem.languages = mergeValues(item1.getLanguages(), item2.getLanguages());
+        mergedItem.roles = mergeValues(item1.roles, item2.roles);
 
         mergedItem.kinds = concatKinds(item1.kinds, item2.kinds);
         mergedItem.timestamp = item2.timestamp;
@@ -506,6 +597,10 @@ public class SuggestItem implements Serializable {
         return mergedItem;
     }
 
+    public boolean isBadWord(final BadWordMatcher badWordMatcher) {
+        return badWordMatcher.matches(text);
+    }
+
     public boolean isBadWord(final String[] badWords) {
         for (final String badWord : badWords) {
             if (text.contains(badWord)) {
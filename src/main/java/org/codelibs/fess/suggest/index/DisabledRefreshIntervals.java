@@ -0,0 +1,103 @@
+/*
+ * Copyright 2009-2019 the CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.suggest.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.codelibs.core.lang.StringUtil;
+import org.codelibs.fess.suggest.settings.SuggestSettings;
+import org.codelibs.fess.suggest.util.SuggestUtil;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.settings.Settings;
+
+public class DisabledRefreshIntervals {
+    protected static final String REFRESH_INTERVAL = "index.refresh_interval";
+    protected static final String DISABLED = "-1";
+    protected static final String ORIGINAL_KEY_PREFIX = "refresh_interval_";
+
+    protected final Map<String, Entry> entries = new HashMap<>();
+
+    public synchronized void disable(final Client client, final SuggestSettings settings, final String index,
+            final Map<String, String> refreshIntervals) {
+        final GetSettingsResponse response =
+                client.admin().indices().prepareGetSettings(index).execute().actionGet(settings.getIndicesTimeout());
+        response.getIndexToSettings().keysIt().forEachRemaining(indexName -> {
+            final Entry entry = entries.get(indexName);
+            if (entry != null) {
+                // another job already disabled it, so only the first job keeps the original value.
+                entry.count++;
+                refreshIntervals.put(indexName, entry.original);
+                return;
+            }
+            final String current = response.getIndexToSettings().get(indexName).get(REFRESH_INTERVAL);
+            final String original;
+            if (DISABLED.equals(current)) {
+                final Object saved = settings.get(getOriginalKey(indexName));
+                if (saved == null) {
+                    // disabled by someone else, e.g. a rebuild, who is responsible for restoring it.
+                    return;
+                }
+                // left disabled by a job that did not finish, so the value it saved is restored by this one.
+                original = StringUtil.isEmpty(saved.toString()) ? null : saved.toString();
+            } else {
+                original = current;
+                settings.set(getOriginalKey(indexName), original == null ? StringUtil.EMPTY : original);
+                client.admin().indices().prepareUpdateSettings(indexName).setSettings(Settings.builder().put(REFRESH_INTERVAL, DISABLED))
+                        .execute().actionGet(settings.getIndicesTimeout());
+            }
+            entries.put(indexName, new Entry(original));
+            refreshIntervals.put(indexName, original);
+        });
+    }
+
+    public synchronized void restore(final Client client, final SuggestSettings settings, final Map<String, String> refreshIntervals) {
+        for (final String indexName : new ArrayList<>(refreshIntervals.keySet())) {
+            refreshIntervals.remove(indexName);
+            final Entry entry = entries.get(indexName);
+            if (entry == null || --entry.count > 0) {
+                continue;
+            }
+            entries.remove(indexName);
+            final Settings.Builder builder = Settings.builder();
+            if (entry.original == null) {
+                builder.putNull(REFRESH_INTERVAL);
+            } else {
+                builder.put(REFRESH_INTERVAL, entry.original);
+            }
+            client.admin().indices().prepareUpdateSettings(indexName).setSettings(builder).execute()
+                    .actionGet(settings.getIndicesTimeout());
+            settings.set(getOriginalKey(indexName), null);
+        }
+    }
+
+    protected String getOriginalKey(final String indexName) {
+        // index names contain dots, which a settings key must not have.
+        return ORIGINAL_KEY_PREFIX + SuggestUtil.createSuggestTextId(indexName);
+    }
+
+    protected static class Entry {
+        protected final String original;
+
+        protected int count = 1;
+
+        protected Entry(final String original) {
+            this.original = original;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2009-2019 the CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.suggest.index;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class IndexingCheckpoint {
+    protected static final String CURSOR = "cursor";
+    protected static final String CURSOR_VALUES = "cursorValues";
+    protected static final String NUMBER_OF_SUGGEST_DOCS = "numberOfSuggestDocs";
+    protected static final String NUMBER_OF_INPUT_DOCS = "numberOfInputDocs";
+    protected static final String TIMESTAMP = "timestamp";
+
+    protected final String jobId;
+    protected final Object cursor;
+    protected final int numberOfSuggestDocs;
+    protected final int numberOfInputDocs;
+    protected final long timestamp;
+
+    public IndexingCheckpoint(final String jobId, final Object cursor, final int numberOfSuggestDocs, final int numberOfInputDocs,
+            final long timestamp) {
+        this.jobId = jobId;
+        this.cursor = cursor;
+        this.numberOfSuggestDocs = numberOfSuggestDocs;
+        this.numberOfInputDocs = numberOfInputDocs;
+        this.timestamp = timestamp;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public Object getCursor() {
+        return cursor;
+    }
+
+    public int getNumberOfSuggestDocs() {
+        return numberOfSuggestDocs;
+    }
+
+    public int getNumberOfInputDocs() {
+        return numberOfInputDocs;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public Map<String, Object> toSource() {
+        final Map<String, Object> source = new HashMap<>();
+        // sort value tuples are kept apart from scalar cursors so that both map to a single field type.
+        source.put(cursor instanceof List ? CURSOR_VALUES : CURSOR, cursor);
+        source.put(NUMBER_OF_SUGGEST_DOCS, numberOfSuggestDocs);
+        source.put(NUMBER_OF_INPUT_DOCS, numberOfInputDocs);
+        source.put(TIMESTAMP, timestamp);
+        return source;
+    }
+
+    public static IndexingCheckpoint parseSource(final String jobId, final Map<String, Object> source) {
+        final Object cursor = source.get(CURSOR_VALUES) != null ? source.get(CURSOR_VALUES) : source.get(CURSOR);
+        return new IndexingCheckpoint(jobId, cursor, toInt(source.get(NUMBER_OF_SUGGEST_DOCS)),
+                toInt(source.get(NUMBER_OF_INPUT_DOCS)), toLong(source.get(TIMESTAMP)));
+    }
+
+    private static int toInt(final Object value) {
+        return value == null ? 0 : Integer.parseInt(value.toString());
+    }
+
+    private static long toLong(final Object value) {
+        return value == null ? 0 : Long.parseLong(value.toString());
+    }
+
+    @Override
+    public String toString() {
+        return "IndexingCheckpoint [jobId=" + jobId + ", cursor=" + cursor + ", numberOfSuggestDocs=" + numberOfSuggestDocs
+                + ", numberOfInputDocs=" + numberOfInputDocs + ", timestamp=" + timestamp + "]";
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2009-2019 the CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.suggest.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codelibs.fess.suggest.concurrent.Deferred;
+
+public class IndexingJob {
+    protected final Deferred<SuggestIndexResponse> deferred = new Deferred<>();
+
+    protected final AtomicLong docsRead = new AtomicLong(0);
+    protected final AtomicLong itemsProduced = new AtomicLong(0);
+    protected final AtomicLong itemsWritten = new AtomicLong(0);
+    protected final AtomicLong errorCount = new AtomicLong(0);
+    protected volatile long totalDocs = -1;
+
+    protected final long startTime = System.currentTimeMillis();
+    protected volatile long finishTime = -1;
+    protected volatile long pauseTime = -1;
+    protected long pausedTime = 0;
+
+    protected volatile boolean cancelled = false;
+    protected volatile boolean paused = false;
+    protected final List<Runnable> resumeTasks = new ArrayList<>();
+
+    public Deferred<SuggestIndexResponse>.Promise promise() {
+        return deferred.promise();
+    }
+
+    public CompletableFuture<SuggestIndexResponse> future() {
+        // the job stops at the next batch and still resolves its own promise, so the promise is not cancelled here.
+        final CompletableFuture<SuggestIndexResponse> future = new CompletableFuture<>();
+        promise().then(future::complete).error(future::completeExceptionally);
+        future.whenComplete((response, error) -> {
+            if (future.isCancelled()) {
+                cancel();
+            }
+        });
+        return future;
+    }
+
+    public void cancel() {
+        cancelled = true;
+        resume();
+    }
+
+    public synchronized void pause() {
+        if (!paused && !isDone()) {
+            paused = true;
+            pauseTime = System.currentTimeMillis();
+        }
+    }
+
+    public void resume() {
+        final List<Runnable> tasks;
+        synchronized (this) {
+            if (paused) {
+                paused = false;
+                pausedTime += System.currentTimeMillis() - pauseTime;
+                pauseTime = -1;
+            }
+            notifyAll();
+            tasks = new ArrayList<>(resumeTasks);
+            resumeTasks.clear();
+        }
+        tasks.forEach(Runnable::run);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public boolean isDone() {
+        return finishTime >= 0;
+    }
+
+    public long getDocsRead() {
+        return docsRead.get();
+    }
+
+    public long getItemsProduced() {
+        return itemsProduced.get();
+    }
+
+    public long getItemsWritten() {
+        return itemsWritten.get();
+    }
+
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    public long getTotalDocs() {
+        return totalDocs;
+    }
+
+    public synchronized long getElapsedTime() {
+        final long now = finishTime >= 0 ? finishTime : System.currentTimeMillis();
+        return now - startTime - pausedTime - (pauseTime >= 0 ? now - pauseTime : 0);
+    }
+
+    public double getThroughput() {
+        final long elapsed = getElapsedTime();
+        return elapsed <= 0 ? 0 : docsRead.get() * 1000d / elapsed;
+    }
+
+    public long getEta() {
+        final double throughput = getThroughput();
+        if (totalDocs < 0 || throughput <= 0) {
+            return -1;
+        }
+        return (long) (Math.max(0, totalDocs - docsRead.get()) * 1000d / throughput);
+    }
+
+    protected synchronized boolean awaitRunnable() throws InterruptedException {
+        while (paused && !cancelled) {
+            wait();
+        }
+        return !cancelled;
+    }
+
+    protected synchronized boolean runWhenRunnable(final Runnable task) {
+        if (paused && !cancelled) {
+            resumeTasks.add(task);
+            return false;
+        }
+        return true;
+    }
+
+    protected void setTotalDocs(final long totalDocs) {
+        this.totalDocs = totalDocs;
+    }
+
+    protected void record(final int docs, final SuggestIndexResponse response) {
+        recordRead(docs);
+        recordWritten(response.getNumberOfSuggestDocs(), response.getErrors().size());
+    }
+
+    protected void recordRead(final int docs) {
+        docsRead.addAndGet(docs);
+    }
+
+    protected void recordWritten(final int items, final int errors) {
+        itemsProduced.addAndGet(items);
+        itemsWritten.addAndGet(Math.max(0, items - errors));
+        errorCount.addAndGet(errors);
+    }
+
+    protected void resolve(final SuggestIndexResponse response) {
+        finish();
+        deferred.resolve(response);
+    }
+
+    protected void reject(final Throwable t) {
+        finish();
+        deferred.reject(t);
+    }
+
+    protected synchronized void finish() {
+        if (paused) {
+            resume();
+        }
+        finishTime = System.currentTimeMillis();
+    }
+
+    @Override
+    public String toString() {
+        return "IndexingJob [docsRead=" + getDocsRead() + ", totalDocs=" + totalDocs + ", itemsProduced=" + getItemsProduced()
+                + ", itemsWritten=" + getItemsWritten() + ", errorCount=" + getErrorCount() + ", throughput=" + getThroughput()
+                + ", eta=" + getEta() + ", paused=" + paused + ", cancelled=" + cancelled + ", done=" + isDone() + "]";
+    }
+}
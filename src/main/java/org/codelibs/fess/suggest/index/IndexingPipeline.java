@@ -0,0 +1,418 @@
+/*
+ * Copyright 2009-2019 the CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.suggest.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.codelibs.fess.suggest.concurrent.Deferred;
+import org.codelibs.fess.suggest.entity.SuggestItem;
+import org.codelibs.fess.suggest.exception.SuggestIndexException;
+import org.codelibs.fess.suggest.index.contents.document.DocumentReader;
+
+public class IndexingPipeline {
+    protected final SuggestIndexer indexer;
+    protected final Supplier<DocumentReader> reader;
+
+    protected int docPerReq = 100;
+    protected int parseThreadNum = Runtime.getRuntime().availableProcessors();
+    protected int writeThreadNum = 1;
+    protected int writeBatchSize = 1000;
+    protected int queueCapacity = 10;
+
+    protected final StageMetrics readMetrics = new StageMetrics("read");
+    protected final StageMetrics parseMetrics = new StageMetrics("parse");
+    protected final StageMetrics mergeMetrics = new StageMetrics("merge");
+    protected final StageMetrics writeMetrics = new StageMetrics("write");
+
+    protected final AtomicBoolean started = new AtomicBoolean(false);
+    protected final AtomicBoolean failed = new AtomicBoolean(false);
+    protected final AtomicReference<Throwable> failure = new AtomicReference<>();
+    protected final List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+
+    protected final IndexingJob job = new IndexingJob();
+    protected final Map<String, String> refreshIntervals = new HashMap<>();
+    protected final Queue<Map<String, Object>[]> parseQueue = new ConcurrentLinkedQueue<>();
+    protected final Map<String, SuggestItem> mergedItems = new LinkedHashMap<>();
+    protected final List<Queue<SuggestItem[]>> writeQueues = new ArrayList<>();
+    protected AtomicBoolean[] runningWriters;
+    protected final AtomicInteger runningParsers = new AtomicInteger(0);
+    // read batches waiting for or being parsed plus write batches waiting for or being written
+    protected final AtomicInteger inFlight = new AtomicInteger(0);
+    protected final AtomicBoolean readerWaiting = new AtomicBoolean(false);
+    protected final AtomicBoolean readerPaused = new AtomicBoolean(false);
+    protected final AtomicLong numberOfInputDocs = new AtomicLong(0);
+    protected final AtomicLong numberOfSuggestDocs = new AtomicLong(0);
+
+    protected DocumentReader documentReader;
+    protected volatile boolean readerDone = false;
+    protected boolean completed = false;
+    protected long startTime;
+
+    protected IndexingPipeline(final SuggestIndexer indexer, final Supplier<DocumentReader> reader) {
+        this.indexer = indexer;
+        this.reader = reader;
+    }
+
+    public IndexingPipeline setDocPerReq(final int docPerReq) {
+        this.docPerReq = docPerReq;
+        return this;
+    }
+
+    public IndexingPipeline setParseThreadNum(final int parseThreadNum) {
+        this.parseThreadNum = parseThreadNum;
+        return this;
+    }
+
+    public IndexingPipeline setWriteThreadNum(final int writeThreadNum) {
+        this.writeThreadNum = writeThreadNum;
+        return this;
+    }
+
+    public IndexingPipeline setWriteBatchSize(final int writeBatchSize) {
+        this.writeBatchSize = writeBatchSize;
+        return this;
+    }
+
+    public IndexingPipeline setQueueCapacity(final int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    public List<StageMetrics> getStageMetrics() {
+        return Arrays.asList(readMetrics, parseMetrics, mergeMetrics, writeMetrics);
+    }
+
+    public IndexingJob getJob() {
+        return job;
+    }
+
+    public Deferred<SuggestIndexResponse>.Promise execute() {
+        return start().promise();
+    }
+
+    public IndexingJob start() {
+        if (!started.compareAndSet(false, true)) {
+            throw new SuggestIndexException("The indexing pipeline has already been started.");
+        }
+        runningWriters = new AtomicBoolean[writeThreadNum];
+        for (int i = 0; i < writeThreadNum; i++) {
+            writeQueues.add(new ConcurrentLinkedQueue<>());
+            runningWriters[i] = new AtomicBoolean(false);
+        }
+        readMetrics.queues = Collections.singletonList(parseQueue);
+        mergeMetrics.queues = writeQueues;
+        startTime = System.currentTimeMillis();
+
+        try {
+            indexer.disableRefreshInterval(refreshIntervals);
+        } catch (final Throwable t) {
+            indexer.restoreRefreshInterval(refreshIntervals, t);
+            job.reject(t);
+            return job;
+        }
+        submit(this::read);
+        return job;
+    }
+
+    protected void read() {
+        try {
+            if (documentReader == null) {
+                documentReader = reader.get();
+                job.setTotalDocs(documentReader.getTotalDocNum());
+            }
+            while (true) {
+                if (failed.get() || job.isCancelled()) {
+                    finishReading();
+                    return;
+                }
+                // a paused job or a failure submits the reader again
+                readerPaused.set(true);
+                if (!job.runWhenRunnable(this::resumeReading) || !readerPaused.compareAndSet(true, false)) {
+                    return;
+                }
+                final int maxInFlight = parseThreadNum + writeThreadNum + queueCapacity;
+                if (inFlight.get() >= maxInFlight) {
+                    // the next released batch submits the reader again
+                    readerWaiting.set(true);
+                    if (inFlight.get() >= maxInFlight || !readerWaiting.compareAndSet(true, false)) {
+                        return;
+                    }
+                }
+
+                final long stageStart = System.nanoTime();
+                final List<Map<String, Object>> docs = new ArrayList<>(docPerReq);
+                Map<String, Object> doc;
+                while (docs.size() < docPerReq && (doc = documentReader.read()) != null) {
+                    docs.add(doc);
+                }
+                if (docs.isEmpty()) {
+                    finishReading();
+                    return;
+                }
+                readMetrics.record(docs.size(), System.nanoTime() - stageStart);
+                if (indexer.throughputGovernor != null) {
+                    indexer.throughputGovernor.acquireDocs(docs.size());
+                }
+                inFlight.incrementAndGet();
+                parseQueue.add(toArray(docs));
+                dispatchParser();
+            }
+        } catch (final Throwable t) {
+            fail(t);
+            finishReading();
+        }
+    }
+
+    protected void resumeReading() {
+        if (readerPaused.compareAndSet(true, false)) {
+            submit(this::read);
+        }
+    }
+
+    protected void finishReading() {
+        try {
+            if (documentReader != null) {
+                documentReader.close();
+            }
+        } catch (final Throwable t) {
+            fail(t);
+        } finally {
+            readerDone = true;
+            tryComplete();
+        }
+    }
+
+    protected void dispatchParser() {
+        final int running = runningParsers.get();
+        if (running < parseThreadNum && runningParsers.compareAndSet(running, running + 1)) {
+            submit(this::parse);
+        }
+    }
+
+    protected void parse() {
+        Map<String, Object>[] docs;
+        while ((docs = parseQueue.poll()) != null) {
+            try {
+                if (!failed.get()) {
+                    final long stageStart = System.nanoTime();
+                    final List<SuggestItem> items = indexer.parseDocuments(docs);
+                    numberOfInputDocs.addAndGet(docs.length);
+                    numberOfSuggestDocs.addAndGet(items.size());
+                    job.recordRead(docs.length);
+                    parseMetrics.record(docs.length, System.nanoTime() - stageStart);
+                    merge(items);
+                }
+            } catch (final Throwable t) {
+                fail(t);
+            } finally {
+                release();
+            }
+        }
+        runningParsers.decrementAndGet();
+        if (!parseQueue.isEmpty()) {
+            dispatchParser();
+        }
+    }
+
+    protected void merge(final List<SuggestItem> items) {
+        synchronized (mergedItems) {
+            final long stageStart = System.nanoTime();
+            for (final SuggestItem item : items) {
+                mergedItems.merge(item.getId(), item, SuggestItem::merge);
+            }
+            mergeMetrics.record(items.size(), System.nanoTime() - stageStart);
+            if (mergedItems.size() >= writeBatchSize) {
+                flush();
+            }
+        }
+    }
+
+    protected void flush() {
+        // the same id always goes to the same writer so that concurrent writers do not overwrite each other.
+        final List<List<SuggestItem>> partitions = new ArrayList<>(writeQueues.size());
+        for (int i = 0; i < writeQueues.size(); i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (final Map.Entry<String, SuggestItem> entry : mergedItems.entrySet()) {
+            partitions.get((entry.getKey().hashCode() & Integer.MAX_VALUE) % writeQueues.size()).add(entry.getValue());
+        }
+        mergedItems.clear();
+        for (int i = 0; i < partitions.size(); i++) {
+            final List<SuggestItem> partition = partitions.get(i);
+            if (!partition.isEmpty()) {
+                inFlight.incrementAndGet();
+                writeQueues.get(i).add(partition.toArray(new SuggestItem[partition.size()]));
+                dispatchWriter(i);
+            }
+        }
+    }
+
+    protected void dispatchWriter(final int partition) {
+        if (runningWriters[partition].compareAndSet(false, true)) {
+            submit(() -> write(partition));
+        }
+    }
+
+    protected void write(final int partition) {
+        final Queue<SuggestItem[]> writeQueue = writeQueues.get(partition);
+        SuggestItem[] items;
+        while ((items = writeQueue.poll()) != null) {
+            try {
+                if (!failed.get()) {
+                    final long stageStart = System.nanoTime();
+                    final SuggestIndexResponse response = indexer.index(items);
+                    errors.addAll(response.getErrors());
+                    job.recordWritten(items.length, response.getErrors().size());
+                    writeMetrics.record(items.length, System.nanoTime() - stageStart);
+                }
+            } catch (final Throwable t) {
+                fail(t);
+            } finally {
+                release();
+            }
+        }
+        runningWriters[partition].set(false);
+        if (!writeQueue.isEmpty()) {
+            dispatchWriter(partition);
+        }
+    }
+
+    protected void release() {
+        inFlight.decrementAndGet();
+        if (readerWaiting.compareAndSet(true, false)) {
+            submit(this::read);
+        }
+        tryComplete();
+    }
+
+    protected void tryComplete() {
+        synchronized (mergedItems) {
+            if (!readerDone || inFlight.get() > 0 || completed) {
+                return;
+            }
+            if (!mergedItems.isEmpty() && !failed.get()) {
+                flush();
+                return;
+            }
+            completed = true;
+        }
+
+        try {
+            indexer.restoreRefreshInterval(refreshIntervals);
+            if (failed.get()) {
+                job.reject(failure.get());
+                return;
+            }
+            indexer.refreshOnJobEnd();
+            job.resolve(new SuggestIndexResponse((int) numberOfSuggestDocs.get(), (int) numberOfInputDocs.get(), errors,
+                    System.currentTimeMillis() - startTime));
+        } catch (final Throwable t) {
+            job.reject(t);
+        }
+    }
+
+    protected void fail(final Throwable t) {
+        if (!failure.compareAndSet(null, t)) {
+            failure.get().addSuppressed(t);
+        }
+        failed.set(true);
+        resumeReading();
+    }
+
+    protected void submit(final Runnable task) {
+        try {
+            indexer.threadPool.execute(task);
+        } catch (final RejectedExecutionException e) {
+            // run the task here so that it releases what it holds after seeing the failure.
+            fail(e);
+            task.run();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected static Map<String, Object>[] toArray(final List<Map<String, Object>> docs) {
+        return docs.toArray(new Map[docs.size()]);
+    }
+
+    public static class StageMetrics {
+        protected final String name;
+        protected final AtomicLong batchCount = new AtomicLong(0);
+        protected final AtomicLong itemCount = new AtomicLong(0);
+        protected final AtomicLong busyNanos = new AtomicLong(0);
+        protected volatile List<? extends Collection<?>> queues = Collections.emptyList();
+
+        protected StageMetrics(final String name) {
+            this.name = name;
+        }
+
+        protected void record(final long items, final long nanos) {
+            batchCount.incrementAndGet();
+            itemCount.addAndGet(items);
+            busyNanos.addAndGet(nanos);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getBatchCount() {
+            return batchCount.get();
+        }
+
+        public long getItemCount() {
+            return itemCount.get();
+        }
+
+        public long getBusyTime() {
+            return TimeUnit.NANOSECONDS.toMillis(busyNanos.get());
+        }
+
+        public double getThroughput() {
+            final long nanos = busyNanos.get();
+            return nanos == 0 ? 0 : itemCount.get() * 1000000000d / nanos;
+        }
+
+        public int getQueueDepth() {
+            int depth = 0;
+            for (final Collection<?> queue : queues) {
+                depth += queue.size();
+            }
+            return depth;
+        }
+
+        @Override
+        public String toString() {
+            return "StageMetrics [name=" + name + ", batchCount=" + getBatchCount() + ", itemCount=" + getItemCount() + ", busyTime="
+                    + getBusyTime() + ", queueDepth=" + getQueueDepth() + "]";
+        }
+    }
+}
@@ -18,9 +18,15 @@ package org.codelibs.fess.suggest.index;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -28,6 +34,7 @@ import java.util.stream.Stream;
 import org.codelibs.core.lang.StringUtil;
 import org.codelibs.fess.suggest.analysis.SuggestAnalyzer;
 import org.codelibs.fess.suggest.concurrent.Deferred;
+import org.codelibs.fess.suggest.concurrent.ThroughputGovernor;
 import org.codelibs.fess.suggest.constants.FieldNames;
 import org.codelibs.fess.suggest.converter.ReadingConverter;
 import org.codelibs.fess.suggest.entity.ElevateWord;
@@ -43,15 +50,36 @@ import org.codelibs.fess.suggest.index.writer.SuggestWriter;
 import org.codelibs.fess.suggest.index.writer.SuggestWriterResult;
 import org.codelibs.fess.suggest.normalizer.Normalizer;
 import org.codelibs.fess.suggest.settings.SuggestSettings;
+import org.codelibs.fess.suggest.util.BadWordMatcher;
 import org.codelibs.fess.suggest.util.SuggestUtil;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.support.WriteRequest;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.Operator;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.reindex.AbstractBulkByScrollRequest;
+import org.elasticsearch.index.reindex.BulkByScrollResponse;
+import org.elasticsearch.index.reindex.BulkByScrollTask;
+import org.elasticsearch.index.reindex.UpdateByQueryAction;
+import org.elasticsearch.index.reindex.UpdateByQueryRequestBuilder;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
 import org.elasticsearch.search.SearchHit;
 
 public class SuggestIndexer {
+    protected static final String CHECKPOINT_KEY_PREFIX = "checkpoint_";
+    protected static final int MAX_PURGE_WORDS_PER_QUERY = 100;
+    protected static final String CLEAR_FREQ_SCRIPT = "ctx._source[params.freqField] = 0;" //
+            + "def kinds = ctx._source[params.kindsField];" //
+            + "if (kinds instanceof List) { kinds.removeIf(k -> k == params.kind); }" //
+            + "else if (kinds == params.kind) { ctx._source[params.kindsField] = []; }" //
+            + "ctx._source[params.scoreField] = ctx._source[params.otherFreqField] * ctx._source[params.userBoostField];";
+
     protected final Client client;
     protected String index;
     protected String type;
@@ -62,6 +90,7 @@ public class SuggestIndexer {
     protected String roleFieldName;
     protected String langFieldName;
     protected String[] badWords;
+    protected BadWordMatcher badWordMatcher;
     protected boolean parallel;
 
     protected ReadingConverter readingConverter;
@@ -74,6 +103,21 @@ public class SuggestIndexer {
 
     protected ExecutorService threadPool;
 
+    protected ThroughputGovernor throughputGovernor;
+
+    protected RefreshPolicy refreshPolicy = RefreshPolicy.BATCH;
+    protected long refreshInterval = 30 * 1000L;
+    protected boolean disableRefreshIntervalOnJob = false;
+    protected DisabledRefreshIntervals disabledRefreshIntervals = new DisabledRefreshIntervals();
+    protected boolean createOnly = false;
+
+    protected boolean updateByQuery = false;
+    protected int byQuerySlices = AbstractBulkByScrollRequest.AUTO_SLICES;
+    protected float byQueryRequestsPerSecond = Float.POSITIVE_INFINITY;
+    protected boolean nativeDeleteByQuery = false;
+    protected long byQueryPollInterval = 1000;
+    protected Predicate<BulkByScrollTask.Status> byQueryListener;
+
     public SuggestIndexer(final Client client, final String index, final String type, final ReadingConverter readingConverter,
             final ReadingConverter contentsReadingConverter, final Normalizer normalizer, final SuggestAnalyzer analyzer,
             final SuggestSettings settings, final ExecutorService threadPool) {
@@ -82,7 +126,8 @@ public class SuggestIndexer {
         this.type = type;
 
         this.supportedFields = settings.array().get(SuggestSettings.DefaultKeys.SUPPORTED_FIELDS);
-        this.badWords = settings.badword().get(true);
+        this.badWordMatcher = settings.badword().getMatcher();
+        this.badWords = badWordMatcher.getWords();
         this.tagFieldNames = settings.getAsString(SuggestSettings.DefaultKeys.TAG_FIELD_NAME, StringUtil.EMPTY).split(",");
         this.roleFieldName = settings.getAsString(SuggestSettings.DefaultKeys.ROLE_FIELD_NAME, StringUtil.EMPTY);
         this.langFieldName = settings.getAsString(SuggestSettings.DefaultKeys.LANG_FIELD_NAME, StringUtil.EMPTY);
@@ -107,11 +152,17 @@ public class SuggestIndexer {
     //TODO return result
     public SuggestIndexResponse index(final SuggestItem[] items) {
         // TODO parallel?
-        final SuggestItem[] array = Stream.of(items).filter(item -> !item.isBadWord(badWords)).toArray(n -> new SuggestItem[n]);
+        final SuggestItem[] array = Stream.of(items).filter(item -> !item.isBadWord(badWordMatcher)).toArray(n -> new SuggestItem[n]);
 
         try {
+            if (throughputGovernor != null) {
+                throughputGovernor.acquireItems(array.length);
+            }
             final long start = System.currentTimeMillis();
             final SuggestWriterResult result = suggestWriter.write(client, settings, index, type, array, true);
+            if (throughputGovernor != null) {
+                throughputGovernor.record(result.getBulkBytes(), System.currentTimeMillis() - start, result.getRejections());
+            }
             return new SuggestIndexResponse(items.length, items.length, result.getFailures(), System.currentTimeMillis() - start);
         } catch (Exception e) {
             throw new SuggestIndexException("Failed to write items[" + items.length + "] to " + index + "/" + type, e);
@@ -129,7 +180,21 @@ public class SuggestIndexer {
     }
 
     public SuggestDeleteResponse deleteByQuery(final QueryBuilder queryBuilder) {
+        return deleteByQuery(queryBuilder, refreshPolicy != RefreshPolicy.NONE);
+    }
+
+    protected SuggestDeleteResponse deleteByQuery(final QueryBuilder queryBuilder, final boolean refresh) {
         final long start = System.currentTimeMillis();
+        if (nativeDeleteByQuery) {
+            try {
+                SuggestUtil.deleteByQuery(client, settings, index, queryBuilder, refresh, byQuerySlices, byQueryRequestsPerSecond,
+                        byQueryPollInterval, byQueryListener);
+                return new SuggestDeleteResponse(null, System.currentTimeMillis() - start);
+            } catch (final Exception e) {
+                return new SuggestDeleteResponse(Collections.singletonList(e), System.currentTimeMillis() - start);
+            }
+        }
+        // the writer always leaves its deletes visible: its bulks wait for a refresh or it refreshes at the end.
         final SuggestWriterResult result = suggestWriter.deleteByQuery(client, settings, index, type, queryBuilder);
         return new SuggestDeleteResponse(result.getFailures(), System.currentTimeMillis() - start);
     }
@@ -143,19 +208,25 @@ public class SuggestIndexer {
     public SuggestDeleteResponse deleteDocumentWords() {
         final long start = System.currentTimeMillis();
 
+        // refreshed regardless of the policy, or the scroll below would see the deleted words and write them back.
         final SuggestDeleteResponse deleteResponse =
                 deleteByQuery(QueryBuilders.boolQuery().must(QueryBuilders.rangeQuery(FieldNames.DOC_FREQ).gte(1))
                         .mustNot(QueryBuilders.matchPhraseQuery(FieldNames.KINDS, SuggestItem.Kind.QUERY.toString()))
-                        .mustNot(QueryBuilders.matchPhraseQuery(FieldNames.KINDS, SuggestItem.Kind.USER.toString())));
+                        .mustNot(QueryBuilders.matchPhraseQuery(FieldNames.KINDS, SuggestItem.Kind.USER.toString())), true);
         if (deleteResponse.hasError()) {
             throw new SuggestIndexException(deleteResponse.getErrors().get(0));
         }
 
-        final List<SuggestItem> updateItems = new ArrayList<>();
+        if (updateByQuery) {
+            clearFrequencyByQuery(FieldNames.DOC_FREQ, FieldNames.QUERY_FREQ, SuggestItem.Kind.DOCUMENT);
+            return new SuggestDeleteResponse(null, System.currentTimeMillis() - start);
+        }
+
         SearchResponse response = client.prepareSearch(index).setTypes(type).setSize(1000).setScroll(settings.getScrollTimeout())
                 .setQuery(QueryBuilders.rangeQuery(FieldNames.DOC_FREQ).gte(1)).execute().actionGet(settings.getSearchTimeout());
         while (response.getHits().getHits().length > 0) {
             final SearchHit[] hits = response.getHits().getHits();
+            final List<SuggestItem> updateItems = new ArrayList<>(hits.length);
             for (final SearchHit hit : hits) {
                 final SuggestItem item = SuggestItem.parseSource(hit.getSourceAsMap());
                 item.setDocFreq(0);
@@ -179,19 +250,25 @@ public class SuggestIndexer {
     public SuggestDeleteResponse deleteQueryWords() {
         final long start = System.currentTimeMillis();
 
+        // refreshed regardless of the policy, or the scroll below would see the deleted words and write them back.
         final SuggestDeleteResponse deleteResponse =
                 deleteByQuery(QueryBuilders.boolQuery().must(QueryBuilders.rangeQuery(FieldNames.QUERY_FREQ).gte(1))
                         .mustNot(QueryBuilders.matchPhraseQuery(FieldNames.KINDS, SuggestItem.Kind.DOCUMENT.toString()))
-                        .mustNot(QueryBuilders.matchPhraseQuery(FieldNames.KINDS, SuggestItem.Kind.USER.toString())));
+                        .mustNot(QueryBuilders.matchPhraseQuery(FieldNames.KINDS, SuggestItem.Kind.USER.toString())), true);
         if (deleteResponse.hasError()) {
             throw new SuggestIndexException(deleteResponse.getErrors().get(0));
         }
 
-        final List<SuggestItem> updateItems = new ArrayList<>();
+        if (updateByQuery) {
+            clearFrequencyByQuery(FieldNames.QUERY_FREQ, FieldNames.DOC_FREQ, SuggestItem.Kind.QUERY);
+            return new SuggestDeleteResponse(null, System.currentTimeMillis() - start);
+        }
+
         SearchResponse response = client.prepareSearch(index).setTypes(type).setSize(1000).setScroll(settings.getScrollTimeout())
                 .setQuery(QueryBuilders.rangeQuery(FieldNames.QUERY_FREQ).gte(1)).execute().actionGet(settings.getSearchTimeout());
         while (response.getHits().getHits().length > 0) {
             final SearchHit[] hits = response.getHits().getHits();
+            final List<SuggestItem> updateItems = new ArrayList<>(hits.length);
             for (final SearchHit hit : hits) {
                 final SuggestItem item = SuggestItem.parseSource(hit.getSourceAsMap());
                 item.setQueryFreq(0);
@@ -212,6 +289,35 @@ public class SuggestIndexer {
         return new SuggestDeleteResponse(null, System.currentTimeMillis() - start);
     }
 
+    protected void clearFrequencyByQuery(final String freqField, final String otherFreqField, final SuggestItem.Kind kind) {
+        final Map<String, Object> params = new HashMap<>();
+        params.put("freqField", freqField);
+        params.put("otherFreqField", otherFreqField);
+        params.put("kindsField", FieldNames.KINDS);
+        params.put("kind", kind.toString());
+        params.put("scoreField", FieldNames.SCORE);
+        params.put("userBoostField", FieldNames.USER_BOOST);
+
+        final UpdateByQueryRequestBuilder builder = new UpdateByQueryRequestBuilder(client, UpdateByQueryAction.INSTANCE);
+        builder.source(index).filter(QueryBuilders.rangeQuery(freqField).gte(1))
+                .script(new Script(ScriptType.INLINE, "painless", CLEAR_FREQ_SCRIPT, params)).setSlices(byQuerySlices)
+                .setRequestsPerSecond(byQueryRequestsPerSecond).refresh(true);
+        final BulkByScrollResponse response =
+                SuggestUtil.executeByQuery(client, settings, builder, UpdateByQueryAction.INSTANCE, byQueryPollInterval, byQueryListener);
+        if (response.getReasonCancelled() != null) {
+            throw new SuggestIndexException("Updating words was cancelled: " + response.getReasonCancelled());
+        }
+        if (!response.getBulkFailures().isEmpty()) {
+            throw new SuggestIndexException("Failed to update words. " + response.getBulkFailures().get(0).getMessage());
+        }
+        if (!response.getSearchFailures().isEmpty()) {
+            throw new SuggestIndexException("Failed to update words.", response.getSearchFailures().get(0).getReason());
+        }
+        if (response.isTimedOut()) {
+            throw new SuggestIndexException("Timed out updating words.");
+        }
+    }
+
     public SuggestIndexResponse indexFromQueryLog(final QueryLog queryLog) {
         return indexFromQueryLog(new QueryLog[] { queryLog });
     }
@@ -219,6 +325,9 @@ public class SuggestIndexer {
     public SuggestIndexResponse indexFromQueryLog(final QueryLog[] queryLogs) {
         try {
             final long start = System.currentTimeMillis();
+            if (throughputGovernor != null) {
+                throughputGovernor.acquireDocs(queryLogs.length);
+            }
             final Stream<QueryLog> stream = Stream.of(queryLogs);
             if (parallel) {
                 stream.parallel();
@@ -237,7 +346,11 @@ public class SuggestIndexer {
     // TODO replace queryLogReader with lambda reader
     public Deferred<SuggestIndexResponse>.Promise indexFromQueryLog(final QueryLogReader queryLogReader, final int docPerReq,
             final long requestInterval) {
-        final Deferred<SuggestIndexResponse> deferred = new Deferred<>();
+        return startIndexFromQueryLog(queryLogReader, docPerReq, requestInterval).promise();
+    }
+
+    public IndexingJob startIndexFromQueryLog(final QueryLogReader queryLogReader, final int docPerReq, final long requestInterval) {
+        final IndexingJob job = new IndexingJob();
         threadPool.execute(() -> {
             final long start = System.currentTimeMillis();
             int numberOfSuggestDocs = 0;
@@ -245,90 +358,217 @@ public class SuggestIndexer {
             final List<Throwable> errors = new ArrayList<>();
 
             final List<QueryLog> queryLogs = new ArrayList<>(docPerReq);
+            final Map<String, String> refreshIntervals = new HashMap<>();
             try {
+                disableRefreshInterval(refreshIntervals);
+                long lastRefreshTime = System.currentTimeMillis();
                 QueryLog queryLog = queryLogReader.read();
                 while (queryLog != null) {
-                    if (Thread.currentThread().isInterrupted()) {
+                    if (Thread.currentThread().isInterrupted() || !job.awaitRunnable()) {
                         break;
                     }
                     queryLogs.add(queryLog);
                     queryLog = queryLogReader.read();
                     if ((queryLog == null && !queryLogs.isEmpty()) || queryLogs.size() >= docPerReq) {
                         final SuggestIndexResponse res = indexFromQueryLog(queryLogs.toArray(new QueryLog[queryLogs.size()]));
+                        job.record(queryLogs.size(), res);
                         errors.addAll(res.getErrors());
                         numberOfSuggestDocs += res.getNumberOfSuggestDocs();
                         numberOfInputDocs += res.getNumberOfInputDocs();
                         queryLogs.clear();
+                        lastRefreshTime = refreshOnBatch(lastRefreshTime);
 
-                        Thread.sleep(requestInterval);
+                        if (throughputGovernor == null) {
+                            Thread.sleep(requestInterval);
+                        }
                     }
                 }
-                deferred.resolve(
+                restoreRefreshInterval(refreshIntervals);
+                refreshOnJobEnd();
+                job.resolve(
                         new SuggestIndexResponse(numberOfSuggestDocs, numberOfInputDocs, errors, System.currentTimeMillis() - start));
             } catch (final Throwable t) {
-                deferred.reject(t);
+                restoreRefreshInterval(refreshIntervals, t);
+                job.reject(t);
             } finally {
                 queryLogReader.close();
             }
         });
-        return deferred.promise();
+        return job;
     }
 
     public SuggestIndexResponse indexFromDocument(final Map<String, Object>[] documents) {
         final long start = System.currentTimeMillis();
         try {
-            final Stream<Map<String, Object>> stream = Stream.of(documents);
-            if (parallel) {
-                stream.parallel();
+            if (throughputGovernor != null) {
+                throughputGovernor.acquireDocs(documents.length);
             }
-            final SuggestItem[] array = stream
-                    .flatMap(document -> contentsParser.parseDocument(document, supportedFields, tagFieldNames, roleFieldName,
-                            langFieldName, readingConverter, contentsReadingConverter, normalizer, analyzer).stream())
-                    .toArray(n -> new SuggestItem[n]);
-            final SuggestIndexResponse response = index(array);
-            return new SuggestIndexResponse(array.length, documents.length, response.getErrors(), System.currentTimeMillis() - start);
+            final List<SuggestItem> items = parseDocuments(documents);
+            final List<SuggestItem> mergedItems = mergeItems(items);
+            final SuggestIndexResponse response = index(mergedItems.toArray(new SuggestItem[mergedItems.size()]));
+            // counts the items produced by the parser as before, not the merged items sent to the index.
+            return new SuggestIndexResponse(items.size(), documents.length, response.getErrors(), System.currentTimeMillis() - start);
         } catch (final Exception e) {
             throw new SuggestIndexException("Failed to index from document", e);
         }
     }
 
+    protected List<SuggestItem> parseDocuments(final Map<String, Object>[] documents) {
+        final Stream<Map<String, Object>> stream = Stream.of(documents);
+        if (parallel) {
+            stream.parallel();
+        }
+        return stream
+                .flatMap(document -> contentsParser.parseDocument(document, supportedFields, tagFieldNames, roleFieldName, langFieldName,
+                        readingConverter, contentsReadingConverter, normalizer, analyzer).stream())
+                .collect(Collectors.toList());
+    }
+
+    protected static List<SuggestItem> mergeItems(final List<SuggestItem> items) {
+        final Map<String, SuggestItem> mergedItems = new LinkedHashMap<>();
+        for (final SuggestItem item : items) {
+            mergedItems.merge(item.getId(), item, SuggestItem::merge);
+        }
+        return new ArrayList<>(mergedItems.values());
+    }
+
+    public IndexingPipeline pipeline(final Supplier<DocumentReader> reader) {
+        return new IndexingPipeline(this, reader);
+    }
+
     public Deferred<SuggestIndexResponse>.Promise indexFromDocument(final Supplier<DocumentReader> reader, final int docPerReq,
             final long requestInterval) {
-        final Deferred<SuggestIndexResponse> deferred = new Deferred<>();
+        return indexFromDocument(cursor -> reader.get(), null, null, docPerReq, requestInterval);
+    }
+
+    public Deferred<SuggestIndexResponse>.Promise indexFromDocument(final Function<Object, DocumentReader> reader, final String jobId,
+            final String cursorField, final int docPerReq, final long requestInterval) {
+        return startIndexFromDocument(reader, jobId, cursorField, docPerReq, requestInterval).promise();
+    }
+
+    public IndexingJob startIndexFromDocument(final Supplier<DocumentReader> reader, final int docPerReq, final long requestInterval) {
+        return startIndexFromDocument(cursor -> reader.get(), null, null, docPerReq, requestInterval);
+    }
+
+    public IndexingJob startIndexFromDocument(final Function<Object, DocumentReader> reader, final String jobId, final String cursorField,
+            final int docPerReq, final long requestInterval) {
+        final IndexingJob job = new IndexingJob();
         threadPool.execute(() -> {
             final long start = System.currentTimeMillis();
-            int numberOfSuggestDocs = 0;
-            int numberOfInputDocs = 0;
-
             final List<Throwable> errors = new ArrayList<>();
             final List<Map<String, Object>> docs = new ArrayList<>(docPerReq);
-            try (final DocumentReader documentReader = reader.get()) {
-                Map<String, Object> doc = documentReader.read();
-                while (doc != null) {
-                    if (Thread.currentThread().isInterrupted()) {
-                        break;
+            final Map<String, String> refreshIntervals = new HashMap<>();
+            try {
+                final IndexingCheckpoint checkpoint = jobId == null ? null : getCheckpoint(jobId);
+                int numberOfSuggestDocs = checkpoint == null ? 0 : checkpoint.getNumberOfSuggestDocs();
+                int numberOfInputDocs = checkpoint == null ? 0 : checkpoint.getNumberOfInputDocs();
+                disableRefreshInterval(refreshIntervals);
+                long lastRefreshTime = System.currentTimeMillis();
+                try (final DocumentReader documentReader = reader.apply(checkpoint == null ? null : checkpoint.getCursor())) {
+                    job.setTotalDocs(documentReader.getTotalDocNum());
+                    Object cursor = null;
+                    Map<String, Object> doc = documentReader.read();
+                    while (doc != null) {
+                        if (Thread.currentThread().isInterrupted() || !job.awaitRunnable()) {
+                            break;
+                        }
+                        docs.add(doc);
+                        if (cursorField != null) {
+                            // taken before reading ahead so that the checkpoint never passes a document that is not indexed yet.
+                            final Object readerCursor = documentReader.getCursor();
+                            cursor = readerCursor != null ? readerCursor : doc.get(cursorField);
+                        }
+                        doc = documentReader.read();
+                        if (doc == null || docs.size() >= docPerReq) {
+                            final SuggestIndexResponse res = indexFromDocument(docs.toArray(new Map[docs.size()]));
+                            job.record(docs.size(), res);
+                            errors.addAll(res.getErrors());
+                            numberOfSuggestDocs += res.getNumberOfSuggestDocs();
+                            numberOfInputDocs += res.getNumberOfInputDocs();
+                            lastRefreshTime = refreshOnBatch(lastRefreshTime);
+                            docs.clear();
+                            if (jobId != null) {
+                                saveCheckpoint(new IndexingCheckpoint(jobId, cursor, numberOfSuggestDocs, numberOfInputDocs,
+                                        System.currentTimeMillis()));
+                            }
+
+                            if (throughputGovernor == null) {
+                                Thread.sleep(requestInterval);
+                            }
+                        }
                     }
-                    docs.add(doc);
-                    doc = documentReader.read();
-                    if (doc == null || docs.size() >= docPerReq) {
-                        final SuggestIndexResponse res = indexFromDocument(docs.toArray(new Map[docs.size()]));
-                        errors.addAll(res.getErrors());
-                        numberOfSuggestDocs += res.getNumberOfSuggestDocs();
-                        numberOfInputDocs += res.getNumberOfInputDocs();
-                        client.admin().indices().prepareRefresh(index).execute().actionGet(settings.getIndicesTimeout());
-                        docs.clear();
 
-                        Thread.sleep(requestInterval);
+                    restoreRefreshInterval(refreshIntervals);
+                    refreshOnJobEnd();
+                    if (jobId != null && doc == null) {
+                        deleteCheckpoint(jobId);
                     }
+                    job.resolve(
+                            new SuggestIndexResponse(numberOfSuggestDocs, numberOfInputDocs, errors, System.currentTimeMillis() - start));
                 }
-
-                deferred.resolve(
-                        new SuggestIndexResponse(numberOfSuggestDocs, numberOfInputDocs, errors, System.currentTimeMillis() - start));
             } catch (final Throwable t) {
-                deferred.reject(t);
+                restoreRefreshInterval(refreshIntervals, t);
+                job.reject(t);
             }
         });
-        return deferred.promise();
+        return job;
+    }
+
+    protected long refreshOnBatch(final long lastRefreshTime) {
+        final long now = System.currentTimeMillis();
+        if (refreshPolicy == RefreshPolicy.BATCH || (refreshPolicy == RefreshPolicy.INTERVAL && now - lastRefreshTime >= refreshInterval)) {
+            refresh();
+            return now;
+        }
+        return lastRefreshTime;
+    }
+
+    protected void refreshOnJobEnd() {
+        if (refreshPolicy != RefreshPolicy.NONE && refreshPolicy != RefreshPolicy.WAIT_FOR) {
+            refresh();
+        }
+    }
+
+    protected void refresh() {
+        client.admin().indices().prepareRefresh(index).execute().actionGet(settings.getIndicesTimeout());
+    }
+
+    protected void disableRefreshInterval(final Map<String, String> refreshIntervals) {
+        if (!disableRefreshIntervalOnJob || refreshPolicy == RefreshPolicy.WAIT_FOR) {
+            return;
+        }
+
+        disabledRefreshIntervals.disable(client, settings, index, refreshIntervals);
+    }
+
+    protected void restoreRefreshInterval(final Map<String, String> refreshIntervals) {
+        disabledRefreshIntervals.restore(client, settings, refreshIntervals);
+    }
+
+    protected void restoreRefreshInterval(final Map<String, String> refreshIntervals, final Throwable cause) {
+        try {
+            restoreRefreshInterval(refreshIntervals);
+        } catch (final Exception e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    public IndexingCheckpoint getCheckpoint(final String jobId) {
+        final Object value = settings.get(CHECKPOINT_KEY_PREFIX + jobId);
+        if (value instanceof Map) {
+            @SuppressWarnings("unchecked")
+            final Map<String, Object> source = (Map<String, Object>) value;
+            return IndexingCheckpoint.parseSource(jobId, source);
+        }
+        return null;
+    }
+
+    public void deleteCheckpoint(final String jobId) {
+        settings.set(CHECKPOINT_KEY_PREFIX + jobId, null);
+    }
+
+    protected void saveCheckpoint(final IndexingCheckpoint checkpoint) {
+        settings.set(CHECKPOINT_KEY_PREFIX + checkpoint.getJobId(), checkpoint.toSource());
     }
 
     public SuggestIndexResponse indexFromSearchWord(final String searchWord, final String[] fields, final String[] tags,
@@ -364,18 +604,77 @@ public class SuggestIndexer {
     }
 
     public SuggestDeleteResponse addBadWord(final String badWord, final boolean apply) {
-        final String normalized = normalizer.normalize(badWord, "");
-        settings.badword().add(normalized);
-        badWords = settings.badword().get(true);
+        return addBadWords(new String[] { badWord }, apply);
+    }
+
+    public SuggestDeleteResponse addBadWords(final String[] badWords, final boolean apply) {
+        final String[] normalized = Stream.of(badWords).map(badWord -> normalizer.normalize(badWord, "")).toArray(n -> new String[n]);
+        settings.badword().addAll(Arrays.asList(normalized));
+        badWordMatcher = settings.badword().getMatcher();
+        this.badWords = badWordMatcher.getWords();
         if (apply) {
-            return deleteByQuery(QueryBuilders.wildcardQuery(FieldNames.TEXT, "*" + normalized + "*"));
+            return purgeBadWords(new BadWordMatcher(normalized));
         } else {
             return new SuggestDeleteResponse(null, 0);
         }
     }
 
+    public SuggestDeleteResponse purgeBadWords() {
+        return purgeBadWords(badWordMatcher);
+    }
+
+    protected SuggestDeleteResponse purgeBadWords(final BadWordMatcher matcher) {
+        final long start = System.currentTimeMillis();
+        final List<Throwable> errors = new ArrayList<>();
+        final String[] words = Stream.of(matcher.getWords()).filter(StringUtil::isNotEmpty).distinct().toArray(n -> new String[n]);
+        try {
+            for (int i = 0; i < words.length; i += MAX_PURGE_WORDS_PER_QUERY) {
+                final BoolQueryBuilder queryBuilder = QueryBuilders.boolQuery().minimumShouldMatch(1);
+                Stream.of(words).skip(i).limit(MAX_PURGE_WORDS_PER_QUERY).forEach(word -> queryBuilder
+                        .should(QueryBuilders.wildcardQuery(FieldNames.TEXT, "*" + SuggestUtil.escapeWildcardQuery(word) + "*")));
+                purgeBadWords(queryBuilder, matcher, errors);
+            }
+            refreshOnJobEnd();
+        } catch (final Exception e) {
+            errors.add(e);
+        }
+        return new SuggestDeleteResponse(errors, System.currentTimeMillis() - start);
+    }
+
+    protected void purgeBadWords(final QueryBuilder queryBuilder, final BadWordMatcher matcher, final List<Throwable> errors) {
+        String scrollId = null;
+        try {
+            SearchResponse response = client.prepareSearch(index).setTypes(type).setSize(1000).setScroll(settings.getScrollTimeout())
+                    .setQuery(queryBuilder).setFetchSource(FieldNames.TEXT, null).execute().actionGet(settings.getSearchTimeout());
+            scrollId = response.getScrollId();
+            while (response.getHits().getHits().length > 0) {
+                final BulkRequestBuilder bulkRequestBuilder = client.prepareBulk();
+                for (final SearchHit hit : response.getHits().getHits()) {
+                    final Object text = hit.getSourceAsMap().get(FieldNames.TEXT);
+                    if (text != null && matcher.matches(text.toString())) {
+                        bulkRequestBuilder.add(new DeleteRequest(index, type, hit.getId()));
+                    }
+                }
+                if (bulkRequestBuilder.numberOfActions() > 0) {
+                    bulkRequestBuilder.setRefreshPolicy(getBulkRefreshPolicy());
+                    final BulkResponse bulkResponse = bulkRequestBuilder.execute().actionGet(settings.getBulkTimeout());
+                    if (bulkResponse.hasFailures()) {
+                        errors.add(new SuggestIndexException(bulkResponse.buildFailureMessage()));
+                    }
+                }
+                response = client.prepareSearchScroll(scrollId).setScroll(settings.getScrollTimeout()).execute()
+                        .actionGet(settings.getSearchTimeout());
+                scrollId = response.getScrollId();
+            }
+        } finally {
+            SuggestUtil.clearScroll(client, settings, scrollId);
+        }
+    }
+
     public void deleteBadWord(final String badWord) {
         settings.badword().delete(normalizer.normalize(badWord, ""));
+        badWordMatcher = settings.badword().getMatcher();
+        badWords = badWordMatcher.getWords();
     }
 
     public SuggestIndexResponse addElevateWord(final ElevateWord elevateWord, final boolean apply) {
@@ -392,6 +691,47 @@ public class SuggestIndexer {
         }
     }
 
+    public SuggestIndexResponse addElevateWords(final ElevateWord[] elevateWords, final boolean apply) {
+        final Map<String, String> normalizedTexts = new HashMap<>();
+        final Function<String, String> normalizeFunc = text -> normalizedTexts.computeIfAbsent(text, t -> normalizer.normalize(t, ""));
+
+        final Map<String, ElevateWord> existingWords = new HashMap<>();
+        for (final ElevateWord elevateWord : settings.elevateWord().get()) {
+            if (elevateWord != null) {
+                existingWords.put(elevateWord.getElevateWord(), elevateWord);
+            }
+        }
+
+        final List<SuggestItem> items = new ArrayList<>(elevateWords.length);
+        final List<ElevateWord> updatedWords = new ArrayList<>();
+        for (final ElevateWord elevateWord : elevateWords) {
+            final List<String> normalizedReadings = elevateWord.getReadings().stream().map(normalizeFunc).collect(Collectors.toList());
+            final ElevateWord normalized = new ElevateWord(normalizeFunc.apply(elevateWord.getElevateWord()), elevateWord.getBoost(),
+                    normalizedReadings, elevateWord.getFields(), elevateWord.getTags(), elevateWord.getRoles());
+            if (!isSameElevateWord(normalized, existingWords.get(normalized.getElevateWord()))) {
+                updatedWords.add(normalized);
+                existingWords.put(normalized.getElevateWord(), normalized);
+            }
+            items.add(normalized.toSuggestItem());
+        }
+        settings.elevateWord().addAll(updatedWords);
+
+        if (apply && !items.isEmpty()) {
+            return index(items.toArray(new SuggestItem[items.size()]));
+        } else {
+            return new SuggestIndexResponse(0, 0, null, 0);
+        }
+    }
+
+    protected boolean isSameElevateWord(final ElevateWord word1, final ElevateWord word2) {
+        if (word1 == null || word2 == null) {
+            return false;
+        }
+        return word1.getElevateWord().equals(word2.getElevateWord()) && word1.getBoost() == word2.getBoost()
+                && Objects.equals(word1.getReadings(), word2.getReadings()) && Objects.equals(word1.getFields(), word2.getFields())
+                && Objects.equals(word1.getTags(), word2.getTags()) && Objects.equals(word1.getRoles(), word2.getRoles());
+    }
+
     public SuggestDeleteResponse deleteElevateWord(final String elevateWord, final boolean apply) {
         final String normalized = normalizer.normalize(elevateWord, "");
         settings.elevateWord().delete(normalized);
@@ -404,18 +744,11 @@ public class SuggestIndexer {
 
     public SuggestIndexResponse restoreElevateWord() {
         final long start = System.currentTimeMillis();
-        int numberOfSuggestDocs = 0;
-        int numberOfInputDocs = 0;
-
-        final ElevateWord[] elevateWords = settings.elevateWord().get();
-        final List<Throwable> errors = new ArrayList<>(elevateWords.length);
-        for (final ElevateWord elevateWord : elevateWords) {
-            final SuggestIndexResponse res = addElevateWord(elevateWord, true);
-            numberOfSuggestDocs += res.getNumberOfSuggestDocs();
-            numberOfInputDocs += res.getNumberOfInputDocs();
-            errors.addAll(res.getErrors());
-        }
-        return new SuggestIndexResponse(numberOfSuggestDocs, numberOfInputDocs, errors, System.currentTimeMillis() - start);
+        final ElevateWord[] elevateWords =
+                Stream.of(settings.elevateWord().get()).filter(Objects::nonNull).toArray(n -> new ElevateWord[n]);
+        final SuggestIndexResponse res = addElevateWords(elevateWords, true);
+        return new SuggestIndexResponse(res.getNumberOfSuggestDocs(), res.getNumberOfInputDocs(), res.getErrors(),
+                System.currentTimeMillis() - start);
     }
 
     public SuggestDeleteResponse deleteOldWords(final ZonedDateTime threshold) {
@@ -473,7 +806,74 @@ public class SuggestIndexer {
 
     public SuggestIndexer setSuggestWriter(final SuggestWriter suggestWriter) {
         this.suggestWriter = suggestWriter;
+        suggestWriter.setRefreshPolicy(getBulkRefreshPolicy());
+        suggestWriter.setCreateOnly(createOnly);
+        return this;
+    }
+
+    public SuggestIndexer setCreateOnly(final boolean createOnly) {
+        this.createOnly = createOnly;
+        suggestWriter.setCreateOnly(createOnly);
+        return this;
+    }
+
+    public SuggestIndexer setRefreshPolicy(final RefreshPolicy refreshPolicy) {
+        this.refreshPolicy = refreshPolicy;
+        suggestWriter.setRefreshPolicy(getBulkRefreshPolicy());
+        return this;
+    }
+
+    public SuggestIndexer setRefreshInterval(final long refreshInterval) {
+        this.refreshInterval = refreshInterval;
+        return this;
+    }
+
+    public SuggestIndexer setUpdateByQuery(final boolean updateByQuery) {
+        this.updateByQuery = updateByQuery;
+        return this;
+    }
+
+    public SuggestIndexer setByQuerySlices(final int byQuerySlices) {
+        this.byQuerySlices = byQuerySlices;
+        return this;
+    }
+
+    public SuggestIndexer setByQueryRequestsPerSecond(final float byQueryRequestsPerSecond) {
+        this.byQueryRequestsPerSecond = byQueryRequestsPerSecond;
         return this;
     }
 
+    public SuggestIndexer setNativeDeleteByQuery(final boolean nativeDeleteByQuery) {
+        this.nativeDeleteByQuery = nativeDeleteByQuery;
+        return this;
+    }
+
+    public SuggestIndexer setByQueryPollInterval(final long byQueryPollInterval) {
+        this.byQueryPollInterval = byQueryPollInterval;
+        return this;
+    }
+
+    public SuggestIndexer setByQueryListener(final Predicate<BulkByScrollTask.Status> byQueryListener) {
+        this.byQueryListener = byQueryListener;
+        return this;
+    }
+
+    public SuggestIndexer setDisableRefreshIntervalOnJob(final boolean disableRefreshIntervalOnJob) {
+        this.disableRefreshIntervalOnJob = disableRefreshIntervalOnJob;
+        return this;
+    }
+
+    protected WriteRequest.RefreshPolicy getBulkRefreshPolicy() {
+        return refreshPolicy == RefreshPolicy.WAIT_FOR ? WriteRequest.RefreshPolicy.WAIT_UNTIL : WriteRequest.RefreshPolicy.NONE;
+    }
+
+    public SuggestIndexer setDisabledRefreshIntervals(final DisabledRefreshIntervals disabledRefreshIntervals) {
+        this.disabledRefreshIntervals = disabledRefreshIntervals;
+        return this;
+    }
+
+    public SuggestIndexer setThroughputGovernor(final ThroughputGovernor throughputGovernor) {
+        this.throughputGovernor = throughputGovernor;
+        return this;
+    }
 }
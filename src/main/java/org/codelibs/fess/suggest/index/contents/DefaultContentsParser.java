@@ -18,8 +18,11 @@ package org.codelibs.fess.suggest.index.contents;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.codelibs.core.lang.StringUtil;
 import org.codelibs.fess.suggest.analysis.SuggestAnalyzer;
@@ -146,32 +149,47 @@ public class DefaultContentsParser implements ContentsParser {
                 readingTokens = null;
             }
 
+            // repeated tokens are combined per word so that a reading is converted and an item is created only once.
+            final Map<String, TokenAggregate> aggregates = new LinkedHashMap<>();
+            for (int i = 0; i < tokens.size(); i++) {
+                final String word = tokens.get(i).getTerm();
+                if (StringUtil.isBlank(word)) {
+                    continue;
+                }
+                final TokenAggregate aggregate = aggregates.computeIfAbsent(word, TokenAggregate::new);
+                aggregate.count++;
+                if (readingTokens != null) {
+                    aggregate.readingTerms.add(readingTokens.get(i).getTerm());
+                }
+            }
+            if (aggregates.isEmpty()) {
+                continue;
+            }
+
             try {
-                for (int i = 0; i < tokens.size(); i++) {
-                    final AnalyzeResponse.AnalyzeToken token = tokens.get(i);
-                    final String word = token.getTerm();
-                    if (StringUtil.isBlank(word)) {
-                        continue;
-                    }
-                    final String[] words = new String[] { word };
-                    final String[][] readings = new String[words.length][];
+                final String[] langs = lang == null ? new String[] {} : new String[] { lang };
+                for (final TokenAggregate aggregate : aggregates.values()) {
+                    final String word = aggregate.word;
                     final List<String> l;
                     if (readingTokens == null) {
                         l = readingConverter.convert(word, field, lang);
                     } else {
-                        final String reading = readingTokens.get(i).getTerm();
-                        l = contentsReadingConverter.convert(reading, field, lang);
+                        l = new ArrayList<>();
+                        for (final String readingTerm : aggregate.readingTerms) {
+                            for (final String reading : contentsReadingConverter.convert(readingTerm, field, lang)) {
+                                if (!l.contains(reading)) {
+                                    l.add(reading);
+                                }
+                            }
+                        }
                     }
                     l.add(word);
-                    readings[0] = l.toArray(new String[l.size()]);
 
                     if (items == null) {
-                        items = new ArrayList<>(text.length() * fields.length / field.length());
+                        items = new ArrayList<>(aggregates.size() * fields.length);
                     }
-
-                    final String[] langs = lang == null ? new String[] {} : new String[] { lang };
-                    items.add(new SuggestItem(words, readings, new String[] { field }, 1L, 0, -1, tags, roles, langs,
-                            SuggestItem.Kind.DOCUMENT));
+                    items.add(new SuggestItem(new String[] { word }, new String[][] { l.toArray(new String[l.size()]) },
+                            new String[] { field }, aggregate.count, 0, -1, tags, roles, langs, SuggestItem.Kind.DOCUMENT));
                 }
             } catch (final IOException e) {
                 throw new SuggesterException("Failed to create SuggestItem from document.", e);
@@ -196,6 +214,16 @@ public class DefaultContentsParser implements ContentsParser {
         return new String[0];
     }
 
+    protected static class TokenAggregate {
+        protected final String word;
+        protected final Set<String> readingTerms = new LinkedHashSet<>();
+        protected long count = 0;
+
+        protected TokenAggregate(final String word) {
+            this.word = word;
+        }
+    }
+
     protected boolean isExcludeSearchword(final String searchWord, final String field, final String[] langs,
             final SuggestAnalyzer analyzer) {
         if (langs == null || langs.length == 0) {
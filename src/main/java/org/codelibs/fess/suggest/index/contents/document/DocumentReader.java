@@ -21,6 +21,14 @@ import java.util.Map;
 public interface DocumentReader extends Closeable {
     Map<String, Object> read();
 
+    default long getTotalDocNum() {
+        return -1;
+    }
+
+    default Object getCursor() {
+        return null;
+    }
+
     @Override
     void close();
 }
@@ -16,24 +16,48 @@
 package org.codelibs.fess.suggest.index.contents.document;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Random;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.core.lang.StringUtil;
+import org.codelibs.fess.suggest.concurrent.SuggestThreadPool;
 import org.codelibs.fess.suggest.settings.SuggestSettings;
+import org.codelibs.fess.suggest.util.SuggestUtil;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.slice.SliceBuilder;
 import org.elasticsearch.search.sort.SortBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
 
 public class ESSourceReader implements DocumentReader {
+    private static final Logger logger = LogManager.getLogger(ESSourceReader.class);
+
+    protected static final String ID_FIELD = "_id";
+
     protected final Queue<Map<String, Object>> queue = new ConcurrentLinkedQueue<>();
     protected final AtomicBoolean isFinished = new AtomicBoolean(false);
     protected final Random random = new Random();
@@ -54,7 +78,26 @@ public class ESSourceReader implements DocumentReader {
 
     protected String scrollId = null;
 
+    protected int sliceNum = 1;
+    protected int queueCapacity = 10000;
+    protected int prefetchSize = 0;
+    protected long prefetchMemoryLimit = -1;
+    protected ExecutorService executorService = null;
+    protected boolean sourceFiltering = true;
+    protected final List<String> sourceFields = new ArrayList<>();
+    protected String documentSizeField = null;
+    protected String cursorField = null;
+    protected Object[] cursorAfter = null;
+    protected volatile Object[] lastCursor = null;
+    protected final Queue<Object[]> cursorQueue = new ConcurrentLinkedQueue<>();
+    protected BlockingQueue<QueuedSource> sourceQueue = null;
+    protected Semaphore queuedBytes = null;
+    protected final Map<Integer, String> sliceScrollIds = new ConcurrentHashMap<>();
+    protected final AtomicInteger runningProducers = new AtomicInteger(0);
+    protected final AtomicReference<RuntimeException> producerException = new AtomicReference<>();
+
     protected final AtomicLong docCount = new AtomicLong(0);
+    protected final AtomicLong readCount = new AtomicLong(0);
     protected final long totalDocNum;
 
     public ESSourceReader(final Client client, final SuggestSettings settings, final String indexName, final String typeName) {
@@ -64,21 +107,69 @@ public class ESSourceReader implements DocumentReader {
         this.typeName = typeName;
         this.supportedFields = settings.array().get(SuggestSettings.DefaultKeys.SUPPORTED_FIELDS);
         this.totalDocNum = getTotal();
+
+        sourceFields.addAll(Arrays.asList(supportedFields));
+        for (final String tagFieldName : settings.getAsString(SuggestSettings.DefaultKeys.TAG_FIELD_NAME, StringUtil.EMPTY).split(",")) {
+            addSourceField(tagFieldName);
+        }
+        addSourceField(settings.getAsString(SuggestSettings.DefaultKeys.ROLE_FIELD_NAME, StringUtil.EMPTY));
+        addSourceField(settings.getAsString(SuggestSettings.DefaultKeys.LANG_FIELD_NAME, StringUtil.EMPTY));
     }
 
     @Override
-    public synchronized Map<String, Object> read() {
+    public Map<String, Object> read() {
+        if (sliceNum > 1 || prefetchSize > 0) {
+            return readFromQueue();
+        }
+        return readFromScroll();
+    }
+
+    protected synchronized Map<String, Object> readFromScroll() {
         while (!isFinished.get() && queue.isEmpty()) {
             addDocumentToQueue();
         }
 
-        return queue.poll();
+        final Map<String, Object> source = queue.poll();
+        if (source != null && cursorField != null) {
+            lastCursor = cursorQueue.poll();
+        }
+        return source;
+    }
+
+    @Override
+    public Object getCursor() {
+        final Object[] cursor = lastCursor;
+        if (cursor == null) {
+            return null;
+        }
+        return Stream.of(cursor).map(value -> value == null ? null : value.toString()).collect(Collectors.toList());
+    }
+
+    @Override
+    public long getTotalDocNum() {
+        return getLimitDocNum(totalDocNum, limitPercentage, limitNumber);
     }
 
     @Override
     public void close() {
         isFinished.set(true);
         queue.clear();
+        cursorQueue.clear();
+        if (sourceQueue != null) {
+            sourceQueue.clear();
+        }
+        clearScroll(scrollId);
+        scrollId = null;
+        sliceScrollIds.values().forEach(this::clearScroll);
+        sliceScrollIds.clear();
+    }
+
+    protected void clearScroll(final String scrollId) {
+        try {
+            SuggestUtil.clearScroll(client, settings, scrollId);
+        } catch (final Exception e) {
+            logger.warn("Failed to clear the scroll context: " + scrollId, e);
+        }
     }
 
     public void setScrollSize(final int scrollSize) {
@@ -115,6 +206,262 @@ public class ESSourceReader implements DocumentReader {
         this.limitNumber = limitNumber;
     }
 
+    public void setSliceNum(final int sliceNum) {
+        this.sliceNum = sliceNum;
+    }
+
+    public void setQueueCapacity(final int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public void setExecutorService(final ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    public void setSourceFiltering(final boolean sourceFiltering) {
+        this.sourceFiltering = sourceFiltering;
+    }
+
+    public void addSourceField(final String field) {
+        if (StringUtil.isNotBlank(field) && !sourceFields.contains(field.trim())) {
+            sourceFields.add(field.trim());
+        }
+    }
+
+    public void setDocumentSizeField(final String documentSizeField) {
+        this.documentSizeField = documentSizeField;
+    }
+
+    public void setCursor(final String field, final Object after) {
+        this.cursorField = field;
+        this.cursorAfter = toSearchAfter(after);
+        this.lastCursor = cursorAfter;
+        addSourceField(field);
+    }
+
+    protected static Object[] toSearchAfter(final Object cursor) {
+        if (cursor == null) {
+            return null;
+        } else if (cursor instanceof List) {
+            return ((List<?>) cursor).toArray();
+        } else if (cursor instanceof Object[]) {
+            return (Object[]) cursor;
+        }
+        // a bare value has no tiebreaker, so documents sharing it are read again instead of being skipped.
+        return new Object[] { cursor, StringUtil.EMPTY };
+    }
+
+    public void setPrefetchSize(final int prefetchSize) {
+        this.prefetchSize = prefetchSize;
+    }
+
+    public void setPrefetchMemoryLimit(final long prefetchMemoryLimit) {
+        this.prefetchMemoryLimit = prefetchMemoryLimit;
+    }
+
+    protected Map<String, Object> readFromQueue() {
+        startProducers();
+
+        final long limitDocNum = getLimitDocNum(totalDocNum, limitPercentage, limitNumber);
+        try {
+            while (true) {
+                final QueuedSource queued = sourceQueue.poll(100, TimeUnit.MILLISECONDS);
+                if (queued != null) {
+                    if (queuedBytes != null) {
+                        queuedBytes.release(queued.permits);
+                    }
+                    if (readCount.incrementAndGet() > limitDocNum) {
+                        isFinished.set(true);
+                        return null;
+                    }
+                    if (cursorField != null) {
+                        lastCursor = queued.cursor;
+                    }
+                    return queued.source;
+                }
+
+                final RuntimeException exception = producerException.get();
+                if (exception != null) {
+                    isFinished.set(true);
+                    throw exception;
+                }
+                if (isFinished.get() || (runningProducers.get() == 0 && sourceQueue.isEmpty())) {
+                    return null;
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    protected synchronized void startProducers() {
+        if (sourceQueue != null) {
+            return;
+        }
+        if (sliceNum > 1) {
+            if (cursorField != null) {
+                throw new IllegalStateException("A cursor cannot be used with sliced scrolls.");
+            }
+            if (!sortList.isEmpty()) {
+                // each slice is sorted on its own, so the merged documents would not follow the sort.
+                throw new IllegalStateException("A sort cannot be used with sliced scrolls.");
+            }
+        }
+
+        final int producerNum = sliceNum > 1 ? sliceNum : 1;
+        final int capacity = sliceNum > 1 ? queueCapacity : Math.max(prefetchSize * scrollSize, 1);
+        sourceQueue = new LinkedBlockingQueue<>(capacity);
+        if (prefetchMemoryLimit > 0) {
+            queuedBytes = new Semaphore((int) Math.min(prefetchMemoryLimit, Integer.MAX_VALUE));
+        }
+        final ExecutorService executor = executorService != null ? executorService
+                : new SuggestThreadPool("source-reader", producerNum, 0, new ThreadPoolExecutor.AbortPolicy());
+        runningProducers.set(producerNum);
+        for (int i = 0; i < producerNum; i++) {
+            final int sliceId = i;
+            executor.execute(() -> {
+                try {
+                    scrollSlice(sliceId);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (final Exception e) {
+                    producerException.compareAndSet(null, new RuntimeException("Failed to read slice " + sliceId, e));
+                } finally {
+                    runningProducers.decrementAndGet();
+                }
+            });
+        }
+        if (executorService == null) {
+            executor.shutdown();
+        }
+    }
+
+    protected void scrollSlice(final int sliceId) throws InterruptedException {
+        final long limitDocNum = getLimitDocNum(totalDocNum, limitPercentage, limitNumber);
+        final SearchRequestBuilder builder = createSearchRequestBuilder(cursorAfter);
+        if (sliceNum > 1) {
+            builder.slice(new SliceBuilder(sliceId, sliceNum));
+        }
+        try {
+            SearchResponse response = executeWithRetry(() -> builder.execute().actionGet(settings.getSearchTimeout()));
+            setSliceScrollId(sliceId, response.getScrollId());
+            while (!isFinished.get() && readCount.get() < limitDocNum) {
+                final SearchHit[] hits = response.getHits().getHits();
+                if (hits.length == 0) {
+                    break;
+                }
+
+                for (final SearchHit hit : hits) {
+                    final Map<String, Object> source = hit.getSourceAsMap();
+                    if (!isAcceptableDocument(source)) {
+                        continue;
+                    }
+                    final int permits = acquireBytes(hit.getSourceRef() != null ? hit.getSourceRef().length() : 0);
+                    if (permits < 0) {
+                        return;
+                    }
+                    final QueuedSource queued = new QueuedSource(source, permits, cursorField != null ? hit.getSortValues() : null);
+                    while (!sourceQueue.offer(queued, 100, TimeUnit.MILLISECONDS)) {
+                        if (isFinished.get()) {
+                            return;
+                        }
+                    }
+                }
+
+                if (cursorField != null) {
+                    final SearchRequestBuilder nextBuilder = createSearchRequestBuilder(hits[hits.length - 1].getSortValues());
+                    response = executeWithRetry(() -> nextBuilder.execute().actionGet(settings.getSearchTimeout()));
+                } else {
+                    final String sliceScrollId = response.getScrollId();
+                    response = executeWithRetry(() -> client.prepareSearchScroll(sliceScrollId).setScroll(settings.getScrollTimeout())
+                            .execute().actionGet(settings.getSearchTimeout()));
+                    setSliceScrollId(sliceId, response.getScrollId());
+                }
+            }
+        } finally {
+            final String sliceScrollId = sliceScrollIds.remove(sliceId);
+            if (sliceScrollId != null) {
+                clearScroll(sliceScrollId);
+            }
+        }
+    }
+
+    protected void setSliceScrollId(final int sliceId, final String sliceScrollId) {
+        if (sliceScrollId != null) {
+            sliceScrollIds.put(sliceId, sliceScrollId);
+        }
+    }
+
+    protected int acquireBytes(final long size) throws InterruptedException {
+        if (queuedBytes == null) {
+            return 0;
+        }
+        // a document larger than the limit waits until the queue is empty.
+        final int permits = (int) Math.min(size, Math.min(prefetchMemoryLimit, Integer.MAX_VALUE));
+        while (!queuedBytes.tryAcquire(permits, 100, TimeUnit.MILLISECONDS)) {
+            if (isFinished.get()) {
+                return -1;
+            }
+        }
+        return permits;
+    }
+
+    protected SearchResponse executeWithRetry(final Supplier<SearchResponse> supplier) {
+        RuntimeException exception = null;
+        for (int i = 0; i < maxRetryCount; i++) {
+            try {
+                return supplier.get();
+            } catch (final RuntimeException e) {
+                exception = e;
+            }
+        }
+        throw exception;
+    }
+
+    protected SearchRequestBuilder createSearchRequestBuilder(final Object[] searchAfter) {
+        final QueryBuilder query;
+        if (limitOfDocumentSize > 0 && documentSizeField != null) {
+            query = QueryBuilders.boolQuery().must(queryBuilder)
+                    .filter(QueryBuilders.rangeQuery(documentSizeField).lte(limitOfDocumentSize));
+        } else {
+            query = queryBuilder;
+        }
+        final SearchRequestBuilder builder =
+                client.prepareSearch().setIndices(indexName).setTypes(typeName).setQuery(query).setSize(scrollSize);
+        if (sourceFiltering) {
+            builder.setFetchSource(sourceFields.toArray(new String[sourceFields.size()]), null);
+        }
+        if (cursorField != null) {
+            // pages are read with search_after on (cursor, _id), so other sorts could never change the order.
+            builder.addSort(SortBuilders.fieldSort(cursorField)).addSort(SortBuilders.fieldSort(ID_FIELD));
+            if (searchAfter != null) {
+                builder.searchAfter(searchAfter);
+            }
+            return builder;
+        }
+        builder.setScroll(settings.getScrollTimeout());
+        for (final SortBuilder<?> sortBuilder : sortList) {
+            builder.addSort(sortBuilder);
+        }
+        return builder;
+    }
+
+    protected boolean isAcceptableDocument(final Map<String, Object> source) {
+        if (limitOfDocumentSize <= 0 || documentSizeField != null) {
+            return true;
+        }
+
+        long size = 0;
+        for (final String field : supportedFields) {
+            final Object value = source.get(field);
+            if (value != null) {
+                size += value.toString().length();
+            }
+        }
+        return size <= limitOfDocumentSize;
+    }
+
     protected void addDocumentToQueue() {
         if (docCount.get() > getLimitDocNum(totalDocNum, limitPercentage, limitNumber)) {
             isFinished.set(true);
@@ -126,13 +473,10 @@ public class ESSourceReader implements DocumentReader {
         for (int i = 0; i < maxRetryCount; i++) {
             try {
                 final SearchResponse response;
-                if (scrollId == null) {
-                    final SearchRequestBuilder builder = client.prepareSearch().setIndices(indexName).setTypes(typeName)
-                            .setScroll(settings.getScrollTimeout()).setQuery(queryBuilder).setSize(scrollSize);
-                    for (final SortBuilder<?> sortBuilder : sortList) {
-                        builder.addSort(sortBuilder);
-                    }
-                    response = builder.execute().actionGet(settings.getSearchTimeout());
+                if (cursorField != null) {
+                    response = createSearchRequestBuilder(cursorAfter).execute().actionGet(settings.getSearchTimeout());
+                } else if (scrollId == null) {
+                    response = createSearchRequestBuilder(null).execute().actionGet(settings.getSearchTimeout());
                     scrollId = response.getScrollId();
                 } else {
                     response = client.prepareSearchScroll(scrollId).setScroll(settings.getScrollTimeout()).execute()
@@ -140,32 +484,29 @@ public class ESSourceReader implements DocumentReader {
                     scrollId = response.getScrollId();
                 }
                 final SearchHit[] hits = response.getHits().getHits();
-                if (scrollId == null || hits.length == 0) {
+                if ((cursorField == null && scrollId == null) || hits.length == 0) {
                     isFinished.set(true);
+                    clearScroll(scrollId);
+                    scrollId = null;
                 }
 
                 for (final SearchHit hit : hits) {
                     final Map<String, Object> source = hit.getSourceAsMap();
-                    if (limitOfDocumentSize > 0) {
-                        long size = 0;
-                        for (final String field : supportedFields) {
-                            final Object value = source.get(field);
-                            if (value != null) {
-                                size += value.toString().length();
-                            }
+                    if (isAcceptableDocument(source)) {
+                        if (cursorField != null) {
+                            cursorQueue.add(hit.getSortValues());
                         }
-
-                        if (size <= limitOfDocumentSize) {
-                            queue.add(source);
-                        }
-                    } else {
                         queue.add(source);
                     }
                 }
+                if (cursorField != null && hits.length > 0) {
+                    cursorAfter = hits[hits.length - 1].getSortValues();
+                }
                 exception = null;
                 break;
             } catch (final Exception e) {
                 exception = new RuntimeException(e);
+                clearScroll(scrollId);
                 scrollId = null;
             }
         }
@@ -177,6 +518,18 @@ public class ESSourceReader implements DocumentReader {
         }
     }
 
+    protected static class QueuedSource {
+        protected final Map<String, Object> source;
+        protected final int permits;
+        protected final Object[] cursor;
+
+        protected QueuedSource(final Map<String, Object> source, final int permits, final Object[] cursor) {
+            this.source = source;
+            this.permits = permits;
+            this.cursor = cursor;
+        }
+    }
+
     protected static long getLimitDocNum(final long total, final long limitPercentage, final long limitNumber) {
         final long percentNum = (long) (total * (limitPercentage / 100f));
         if (limitNumber < 0) {
@@ -15,6 +15,13 @@
  */
 package org.codelibs.fess.suggest.index.writer;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.codelibs.fess.suggest.entity.SuggestItem;
 import org.codelibs.fess.suggest.exception.SuggestIndexException;
 import org.codelibs.fess.suggest.settings.SuggestSettings;
@@ -22,53 +29,152 @@ import org.codelibs.fess.suggest.util.SuggestUtil;
 import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.bulk.BulkResponse;
-import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequestBuilder;
 import org.elasticsearch.action.index.IndexAction;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.support.WriteRequest;
 import org.elasticsearch.client.Client;
-import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.rest.RestStatus;
 
 public class SuggestIndexWriter implements SuggestWriter {
+    protected WriteRequest.RefreshPolicy refreshPolicy = WriteRequest.RefreshPolicy.NONE;
+    protected boolean createOnly = false;
+
+    @Override
+    public void setRefreshPolicy(final WriteRequest.RefreshPolicy refreshPolicy) {
+        this.refreshPolicy = refreshPolicy;
+    }
+
+    @Override
+    public void setCreateOnly(final boolean createOnly) {
+        this.createOnly = createOnly;
+    }
+
     @Override
     public SuggestWriterResult write(final Client client, final SuggestSettings settings, final String index, final String type,
             final SuggestItem[] items, final boolean update) {
-        final BulkRequestBuilder bulkRequestBuilder = client.prepareBulk();
-
         final SuggestItem[] mergedItems = mergeItems(items);
         if (mergedItems.length == 0) {
             return new SuggestWriterResult();
         }
+        if (createOnly && update) {
+            return create(client, settings, index, type, mergedItems);
+        }
+        return index(client, settings, index, type, mergedItems, update);
+    }
 
-        for (final SuggestItem item : mergedItems) {
-            final GetResponse getResponse =
-                    client.prepareGet().setIndex(index).setType(type).setId(item.getId()).get(TimeValue.timeValueSeconds(30));
-            if (update && getResponse.isExists()) {
-                final IndexRequestBuilder indexRequestBuilder = new IndexRequestBuilder(client, IndexAction.INSTANCE, index);
-                indexRequestBuilder.setType(type).setId(item.getId()).setOpType(IndexRequest.OpType.INDEX)
-                        .setSource(item.getUpdatedSource(getResponse.getSourceAsMap()));
-                bulkRequestBuilder.add(indexRequestBuilder);
-            } else {
-                final IndexRequestBuilder indexRequestBuilder = new IndexRequestBuilder(client, IndexAction.INSTANCE, index);
-                indexRequestBuilder.setType(type).setId(item.getId()).setOpType(IndexRequest.OpType.INDEX).setSource(item.getSource());
-                bulkRequestBuilder.add(indexRequestBuilder);
+    protected SuggestWriterResult create(final Client client, final SuggestSettings settings, final String index, final String type,
+            final SuggestItem[] items) {
+        final BulkRequestBuilder bulkRequestBuilder = client.prepareBulk();
+        for (final SuggestItem item : items) {
+            final IndexRequestBuilder indexRequestBuilder = new IndexRequestBuilder(client, IndexAction.INSTANCE, index);
+            indexRequestBuilder.setType(type).setId(item.getId()).setOpType(IndexRequest.OpType.CREATE).setSource(toSource(item, null));
+            bulkRequestBuilder.add(indexRequestBuilder);
+        }
+
+        bulkRequestBuilder.setRefreshPolicy(refreshPolicy);
+        final long bulkBytes = bulkRequestBuilder.request().estimatedSizeInBytes();
+        final BulkResponse response = bulkRequestBuilder.execute().actionGet(settings.getBulkTimeout());
+        if (!response.hasFailures()) {
+            final SuggestWriterResult result = new SuggestWriterResult();
+            result.setBulkBytes(bulkBytes);
+            return result;
+        }
+
+        // words that already exist are merged with their stored values, read with a single multi get.
+        final List<SuggestItem> existingItems = new ArrayList<>();
+        final SuggestWriterResult result = new SuggestWriterResult();
+        long totalBulkBytes = bulkBytes;
+        int rejections = 0;
+        for (final BulkItemResponse bulkItemResponses : response.getItems()) {
+            if (!bulkItemResponses.isFailed()) {
+                continue;
             }
+            if (bulkItemResponses.getFailure().getStatus() == RestStatus.CONFLICT) {
+                existingItems.add(items[bulkItemResponses.getItemId()]);
+                continue;
+            }
+            result.addFailure(new SuggestIndexException("Bulk failure. " + bulkItemResponses.getFailureMessage()));
+            if (bulkItemResponses.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS) {
+                rejections++;
+            }
+        }
+        if (!existingItems.isEmpty()) {
+            final SuggestWriterResult updateResult =
+                    index(client, settings, index, type, existingItems.toArray(new SuggestItem[existingItems.size()]), true);
+            updateResult.getFailures().forEach(result::addFailure);
+            rejections += updateResult.getRejections();
+            totalBulkBytes += updateResult.getBulkBytes();
+        }
+        result.setBulkBytes(totalBulkBytes);
+        result.setRejections(rejections);
+        return result;
+    }
+
+    protected SuggestWriterResult index(final Client client, final SuggestSettings settings, final String index, final String type,
+            final SuggestItem[] mergedItems, final boolean update) {
+        final Map<String, Map<String, Object>> existingSources =
+                update ? getExistingSources(client, settings, index, type, mergedItems) : Collections.emptyMap();
+        final BulkRequestBuilder bulkRequestBuilder = client.prepareBulk();
+        for (final SuggestItem item : mergedItems) {
+            final IndexRequestBuilder indexRequestBuilder = new IndexRequestBuilder(client, IndexAction.INSTANCE, index);
+            indexRequestBuilder.setType(type).setId(item.getId()).setOpType(IndexRequest.OpType.INDEX)
+                    .setSource(toSource(item, existingSources.get(item.getId())));
+            bulkRequestBuilder.add(indexRequestBuilder);
         }
 
+        bulkRequestBuilder.setRefreshPolicy(refreshPolicy);
+        final long bulkBytes = bulkRequestBuilder.request().estimatedSizeInBytes();
         final BulkResponse response = bulkRequestBuilder.execute().actionGet(settings.getBulkTimeout());
         final SuggestWriterResult result = new SuggestWriterResult();
+        result.setBulkBytes(bulkBytes);
         if (response.hasFailures()) {
+            int rejections = 0;
             for (final BulkItemResponse bulkItemResponses : response.getItems()) {
                 if (bulkItemResponses.isFailed()) {
                     result.addFailure(new SuggestIndexException("Bulk failure. " + bulkItemResponses.getFailureMessage()));
+                    if (bulkItemResponses.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS) {
+                        rejections++;
+                    }
                 }
             }
+            result.setRejections(rejections);
         }
 
         return result;
     }
 
+    protected Map<String, Map<String, Object>> getExistingSources(final Client client, final SuggestSettings settings,
+            final String index, final String type, final SuggestItem[] items) {
+        final MultiGetRequestBuilder multiGetRequestBuilder = client.prepareMultiGet();
+        for (final SuggestItem item : items) {
+            multiGetRequestBuilder.add(index, type, item.getId());
+        }
+        final Map<String, Map<String, Object>> existingSources = new HashMap<>();
+        for (final MultiGetItemResponse response : multiGetRequestBuilder.execute().actionGet(settings.getSearchTimeout())) {
+            if (response.isFailed()) {
+                throw new SuggestIndexException("Failed to get " + response.getId() + ". " + response.getFailure().getMessage());
+            }
+            if (response.getResponse().isExists()) {
+                existingSources.put(response.getId(), response.getResponse().getSourceAsMap());
+            }
+        }
+        return existingSources;
+    }
+
+    protected XContentBuilder toSource(final SuggestItem item, final Map<String, Object> existingSource) {
+        try {
+            return item.toXContent(XContentFactory.jsonBuilder(), existingSource);
+        } catch (final IOException e) {
+            throw new SuggestIndexException("Failed to create a source of " + item.getText(), e);
+        }
+    }
+
     @Override
     public SuggestWriterResult delete(final Client client, final SuggestSettings settings, final String index, final String type,
             final String id) {
@@ -86,7 +192,9 @@ public class SuggestIndexWriter implements SuggestWriter {
             final QueryBuilder queryBuilder) {
         final SuggestWriterResult result = new SuggestWriterResult();
         try {
-            SuggestUtil.deleteByQuery(client, settings, index, type, queryBuilder);
+            // a delete by query is not visible until the index is refreshed, unless the bulks already waited for it.
+            SuggestUtil.deleteByQuery(client, settings, index, type, queryBuilder, refreshPolicy,
+                    refreshPolicy == WriteRequest.RefreshPolicy.NONE);
         } catch (final Exception e) {
             result.addFailure(e);
         }
@@ -15,13 +15,12 @@
  */
 package org.codelibs.fess.suggest.index.writer;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.codelibs.fess.suggest.entity.SuggestItem;
 import org.codelibs.fess.suggest.settings.SuggestSettings;
+import org.elasticsearch.action.support.WriteRequest;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.index.query.QueryBuilder;
 
@@ -32,31 +31,17 @@ public interface SuggestWriter {
 
     SuggestWriterResult deleteByQuery(Client client, SuggestSettings settings, String index, String type, QueryBuilder queryBuilder);
 
+    default void setRefreshPolicy(final WriteRequest.RefreshPolicy refreshPolicy) {
+    }
+
+    default void setCreateOnly(final boolean createOnly) {
+    }
+
     default SuggestItem[] mergeItems(final SuggestItem[] items) {
-        final Set<String> mergedIdSet = new HashSet<>();
-        final List<SuggestItem> mergedList = new ArrayList<>(items.length);
-
-        for (final SuggestItem item1 : items) {
-            final String item1Id = item1.getId();
-            if (mergedIdSet.contains(item1Id)) {
-                continue;
-            }
-
-            SuggestItem mergedItem = item1;
-            for (final SuggestItem item2 : items) {
-                if (item1.equals(item2)) {
-                    continue;
-                }
-
-                final String item2Id = item2.getId();
-                if (item1Id.equals(item2Id)) {
-                    mergedItem = SuggestItem.merge(mergedItem, item2);
-                    mergedIdSet.add(item1Id);
-                }
-            }
-            mergedList.add(mergedItem);
+        final Map<String, SuggestItem> mergedItems = new LinkedHashMap<>(items.length * 4 / 3 + 1);
+        for (final SuggestItem item : items) {
+            mergedItems.merge(item.getId(), item, SuggestItem::merge);
         }
-
-        return mergedList.toArray(new SuggestItem[mergedList.size()]);
+        return mergedItems.values().toArray(new SuggestItem[mergedItems.size()]);
     }
 }
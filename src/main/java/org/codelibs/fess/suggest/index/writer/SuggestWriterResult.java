@@ -21,6 +21,8 @@ import java.util.List;
 
 public class SuggestWriterResult {
     protected List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+    protected long bulkBytes = 0;
+    protected int rejections = 0;
 
     public void addFailure(final Throwable t) {
         failures.add(t);
@@ -34,4 +36,20 @@ public class SuggestWriterResult {
         return failures;
     }
 
+    public long getBulkBytes() {
+        return bulkBytes;
+    }
+
+    public void setBulkBytes(final long bulkBytes) {
+        this.bulkBytes = bulkBytes;
+    }
+
+    public int getRejections() {
+        return rejections;
+    }
+
+    public void setRejections(final int rejections) {
+        this.rejections = rejections;
+    }
+
 }
@@ -22,10 +22,7 @@ import org.elasticsearch.common.Strings;
 
 public abstract class Request<T extends Response> {
     public Deferred<T>.Promise execute(final Client client) {
-        final String error = getValidationError();
-        if (!Strings.isNullOrEmpty(error)) {
-            throw new IllegalArgumentException(error);
-        }
+        validate();
 
         final Deferred<T> deferred = new Deferred<>();
         try {
@@ -36,6 +33,13 @@ public abstract class Request<T extends Response> {
         return deferred.promise();
     }
 
+    protected void validate() {
+        final String error = getValidationError();
+        if (!Strings.isNullOrEmpty(error)) {
+            throw new IllegalArgumentException(error);
+        }
+    }
+
     protected abstract void processRequest(Client client, Deferred<T> deferred);
 
     protected abstract String getValidationError();
@@ -15,19 +15,53 @@
  */
 package org.codelibs.fess.suggest.request;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
 import org.codelibs.fess.suggest.concurrent.Deferred;
 import org.elasticsearch.client.Client;
 
 public abstract class RequestBuilder<Req extends Request<Res>, Res extends Response> {
     protected Client client;
     protected Req request;
+    protected Executor callbackExecutor;
 
     public RequestBuilder(final Client client, final Req request) {
         this.client = client;
         this.request = request;
     }
 
+    public Req getRequest() {
+        return request;
+    }
+
     public Deferred<Res>.Promise execute() {
         return request.execute(client);
     }
+
+    public CompletableFuture<Res> executeAsync() {
+        final Deferred<Res>.Promise promise = execute();
+        return dispatch(promise, promise.toCompletableFuture());
+    }
+
+    public CompletableFuture<Res> executeAsync(final long time, final TimeUnit unit) {
+        final Deferred<Res>.Promise promise = execute();
+        return dispatch(promise, promise.toCompletableFuture(time, unit));
+    }
+
+    protected CompletableFuture<Res> dispatch(final Deferred<Res>.Promise promise, final CompletableFuture<Res> future) {
+        // dependent stages run on the callback executor instead of the client's network threads.
+        if (callbackExecutor == null) {
+            return future;
+        }
+        final CompletableFuture<Res> dispatched = future.thenApplyAsync(Function.identity(), callbackExecutor);
+        dispatched.whenComplete((response, error) -> {
+            if (dispatched.isCancelled()) {
+                promise.cancel();
+            }
+        });
+        return dispatched;
+    }
 }
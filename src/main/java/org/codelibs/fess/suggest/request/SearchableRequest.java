@@ -0,0 +1,31 @@
+/*
+ * Copyright 2009-2019 the CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.suggest.request;
+
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+
+public abstract class SearchableRequest<T extends Response> extends Request<T> {
+    public SearchRequestBuilder buildSearchRequest(final Client client) {
+        validate();
+        return createSearchRequest(client);
+    }
+
+    public abstract T createResponse(SearchResponse searchResponse);
+
+    protected abstract SearchRequestBuilder createSearchRequest(Client client);
+}
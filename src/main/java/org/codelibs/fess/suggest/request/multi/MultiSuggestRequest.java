@@ -0,0 +1,95 @@
+/*
+ * Copyright 2009-2019 the CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.suggest.request.multi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codelibs.fess.suggest.concurrent.Deferred;
+import org.codelibs.fess.suggest.exception.SuggesterException;
+import org.codelibs.fess.suggest.request.Request;
+import org.codelibs.fess.suggest.request.Response;
+import org.codelibs.fess.suggest.request.SearchableRequest;
+import org.codelibs.fess.suggest.util.SuggestUtil;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.MultiSearchAction;
+import org.elasticsearch.action.search.MultiSearchRequestBuilder;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+
+public class MultiSuggestRequest extends Request<MultiSuggestResponse> {
+    private final List<SearchableRequest<? extends Response>> requests = new ArrayList<>();
+
+    public void add(final SearchableRequest<? extends Response> request) {
+        this.requests.add(request);
+    }
+
+    @Override
+    protected String getValidationError() {
+        if (requests.isEmpty()) {
+            return "No requests.";
+        }
+        return null;
+    }
+
+    @Override
+    protected void processRequest(final Client client, final Deferred<MultiSuggestResponse> deferred) {
+        // every request goes to the index, so the popular words cache, the coalescer and local suggest engines are not used.
+        final MultiSearchRequestBuilder builder = client.prepareMultiSearch();
+        requests.forEach(request -> builder.add(request.buildSearchRequest(client)));
+
+        SuggestUtil.execute(client, MultiSearchAction.INSTANCE, builder.request(), deferred, new ActionListener<MultiSearchResponse>() {
+            @Override
+            public void onResponse(final MultiSearchResponse multiSearchResponse) {
+                deferred.resolve(createMultiResponse(multiSearchResponse));
+            }
+
+            @Override
+            public void onFailure(final Exception e) {
+                deferred.reject(new SuggesterException(e.getMessage(), e));
+            }
+        });
+    }
+
+    protected MultiSuggestResponse createMultiResponse(final MultiSearchResponse multiSearchResponse) {
+        final MultiSearchResponse.Item[] items = multiSearchResponse.getResponses();
+        final List<Response> responses = new ArrayList<>(items.length);
+        final List<Throwable> failures = new ArrayList<>(items.length);
+        for (int i = 0; i < items.length; i++) {
+            final MultiSearchResponse.Item item = items[i];
+            Response response = null;
+            Throwable failure = null;
+            if (item.isFailure()) {
+                failure = new SuggesterException(item.getFailureMessage(), item.getFailure());
+            } else {
+                final SearchResponse searchResponse = item.getResponse();
+                if (searchResponse.getFailedShards() > 0) {
+                    failure = new SuggesterException("Search failure. Failed shards num:" + searchResponse.getFailedShards());
+                } else {
+                    try {
+                        response = requests.get(i).createResponse(searchResponse);
+                    } catch (final Exception e) {
+                        failure = new SuggesterException("Failed to create a response.", e);
+                    }
+                }
+            }
+            responses.add(response);
+            failures.add(failure);
+        }
+        return new MultiSuggestResponse(multiSearchResponse.getTook().getMillis(), responses, failures);
+    }
+}
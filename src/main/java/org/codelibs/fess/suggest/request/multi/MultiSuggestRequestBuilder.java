@@ -0,0 +1,33 @@
+/*
+ * Copyright 2009-2019 the CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.suggest.request.multi;
+
+import org.codelibs.fess.suggest.request.RequestBuilder;
+import org.codelibs.fess.suggest.request.Response;
+import org.codelibs.fess.suggest.request.SearchableRequest;
+import org.elasticsearch.client.Client;
+
+public class MultiSuggestRequestBuilder extends RequestBuilder<MultiSuggestRequest, MultiSuggestResponse> {
+    public MultiSuggestRequestBuilder(final Client client) {
+        super(client, new MultiSuggestRequest());
+    }
+
+    public <Req extends SearchableRequest<Res>, Res extends Response> MultiSuggestRequestBuilder add(
+            final RequestBuilder<Req, Res> builder) {
+        request.add(builder.getRequest());
+        return this;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2009-2019 the CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.suggest.request.multi;
+
+import java.util.List;
+
+import org.codelibs.fess.suggest.request.Response;
+
+public class MultiSuggestResponse implements Response {
+    protected final long tookMs;
+
+    protected final List<Response> responses;
+
+    protected final List<Throwable> failures;
+
+    public MultiSuggestResponse(final long tookMs, final List<Response> responses, final List<Throwable> failures) {
+        this.tookMs = tookMs;
+        this.responses = responses;
+        this.failures = failures;
+    }
+
+    public long getTookMs() {
+        return tookMs;
+    }
+
+    public int size() {
+        return responses.size();
+    }
+
+    public boolean isFailure(final int index) {
+        return failures.get(index) != null;
+    }
+
+    public Throwable getFailure(final int index) {
+        return failures.get(index);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Response> T getResponse(final int index) {
+        return (T) responses.get(index);
+    }
+
+    public List<Response> getResponses() {
+        return responses;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2009-2019 the CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.suggest.request.popularwords;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.fess.suggest.concurrent.Deferred;
+import org.codelibs.fess.suggest.entity.SuggestItem;
+import org.codelibs.fess.suggest.request.Response;
+
+public class PopularWordsCache {
+    private static final Logger logger = LogManager.getLogger(PopularWordsCache.class);
+
+    protected final ExecutorService threadPool;
+
+    protected final Map<String, Candidates> candidatesMap = new ConcurrentHashMap<>();
+
+    protected final Map<String, Deferred<Candidates>> loadingCandidates = new ConcurrentHashMap<>();
+
+    protected final Set<String> reloadingKeys = ConcurrentHashMap.newKeySet();
+
+    protected long expiry = 60 * 1000L;
+
+    protected long timeout = 15 * 1000L;
+
+    protected int candidateSize = 100;
+
+    public PopularWordsCache(final ExecutorService threadPool) {
+        this.threadPool = threadPool;
+    }
+
+    public Deferred<Candidates>.Promise get(final String key, final Supplier<Deferred<Candidates>.Promise> loader) {
+        final Candidates candidates = candidatesMap.get(key);
+        if (candidates != null) {
+            if (System.currentTimeMillis() - candidates.getTimestamp() > expiry && reloadingKeys.add(key)) {
+                reload(key, loader);
+            }
+            final Deferred<Candidates> deferred = new Deferred<>();
+            deferred.resolve(candidates);
+            return deferred.promise();
+        }
+
+        final Deferred<Candidates> deferred = new Deferred<>();
+        final Deferred<Candidates> loading = loadingCandidates.putIfAbsent(key, deferred);
+        if (loading != null) {
+            return loading.promise();
+        }
+        try {
+            loader.get().toCompletableFuture(timeout, TimeUnit.MILLISECONDS).whenComplete((loaded, error) -> {
+                loadingCandidates.remove(key, deferred);
+                if (error != null) {
+                    deferred.reject(error);
+                } else {
+                    candidatesMap.put(key, loaded);
+                    deferred.resolve(loaded);
+                }
+            });
+        } catch (final RuntimeException e) {
+            loadingCandidates.remove(key, deferred);
+            deferred.reject(e);
+        }
+        return deferred.promise();
+    }
+
+    protected void reload(final String key, final Supplier<Deferred<Candidates>.Promise> loader) {
+        try {
+            threadPool.execute(() -> {
+                try {
+                    loader.get().toCompletableFuture(timeout, TimeUnit.MILLISECONDS).whenComplete((loaded, error) -> {
+                        reloadingKeys.remove(key);
+                        if (error != null) {
+                            logger.warn("Failed to reload popular words. The current candidates are kept.", error);
+                        } else {
+                            candidatesMap.put(key, loaded);
+                        }
+                    });
+                } catch (final Exception e) {
+                    reloadingKeys.remove(key);
+                    logger.warn("Failed to reload popular words. The current candidates are kept.", e);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            reloadingKeys.remove(key);
+            logger.warn("Failed to schedule a reload of popular words. The current candidates are kept.", e);
+        }
+    }
+
+    public void clear() {
+        candidatesMap.clear();
+    }
+
+    public long getExpiry() {
+        return expiry;
+    }
+
+    public PopularWordsCache setExpiry(final long expiry) {
+        this.expiry = expiry;
+        return this;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public PopularWordsCache setTimeout(final long timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    public int getCandidateSize() {
+        return candidateSize;
+    }
+
+    public PopularWordsCache setCandidateSize(final int candidateSize) {
+        this.candidateSize = candidateSize;
+        return this;
+    }
+
+    public static class Candidates implements Response {
+        protected final String index;
+
+        protected final long total;
+
+        protected final List<SuggestItem> items;
+
+        protected final long timestamp = System.currentTimeMillis();
+
+        public Candidates(final String index, final long total, final List<SuggestItem> items) {
+            this.index = index;
+            this.total = total;
+            this.items = items;
+        }
+
+        public String getIndex() {
+            return index;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public List<SuggestItem> getItems() {
+            return items;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+    }
+}
@@ -16,16 +16,21 @@
 package org.codelibs.fess.suggest.request.popularwords;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
 
 import org.codelibs.fess.suggest.concurrent.Deferred;
 import org.codelibs.fess.suggest.constants.FieldNames;
 import org.codelibs.fess.suggest.constants.SuggestConstants;
 import org.codelibs.fess.suggest.entity.SuggestItem;
 import org.codelibs.fess.suggest.exception.SuggesterException;
-import org.codelibs.fess.suggest.request.Request;
+import org.codelibs.fess.suggest.request.SearchableRequest;
+import org.codelibs.fess.suggest.util.SuggestUtil;
 import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.SearchAction;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.Client;
@@ -40,7 +45,7 @@ import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.rescore.QueryRescorerBuilder;
 import org.elasticsearch.search.rescore.RescorerBuilder;
 
-public class PopularWordsRequest extends Request<PopularWordsResponse> {
+public class PopularWordsRequest extends SearchableRequest<PopularWordsResponse> {
     private String index = null;
 
     private String type = null;
@@ -63,6 +68,8 @@ public class PopularWordsRequest extends Request<PopularWordsResponse> {
 
     private final List<String> excludeWords = new ArrayList<>();
 
+    private PopularWordsCache cache;
+
     public void setIndex(final String index) {
         this.index = index;
     }
@@ -107,17 +114,26 @@ public class PopularWordsRequest extends Request<PopularWordsResponse> {
         this.queryFreqThreshold = queryFreqThreshold;
     }
 
+    public void setCache(final PopularWordsCache cache) {
+        this.cache = cache;
+    }
+
     @Override
     protected void processRequest(final Client client, final Deferred<PopularWordsResponse> deferred) {
-        final SearchRequestBuilder builder = client.prepareSearch(index);
-        if (!Strings.isNullOrEmpty(type)) {
-            builder.setTypes(type);
+        if (isCacheable()) {
+            final long start = System.currentTimeMillis();
+            cache.get(getCacheKey(), () -> loadCandidates(client)).then(candidates -> {
+                try {
+                    deferred.resolve(createCachedResponse(candidates, start));
+                } catch (final Exception e) {
+                    deferred.reject(e);
+                }
+            }).error(deferred::reject);
+            return;
         }
-        builder.setSize(size);
-        builder.setQuery(buildQuery());
-        builder.setRescorer(buildRescore(), windowSize);
 
-        builder.execute(new ActionListener<SearchResponse>() {
+        final SearchRequestBuilder builder = createSearchRequest(client);
+        SuggestUtil.execute(client, SearchAction.INSTANCE, builder.request(), deferred, new ActionListener<SearchResponse>() {
             @Override
             public void onResponse(final SearchResponse searchResponse) {
                 if (searchResponse.getFailedShards() > 0) {
@@ -134,12 +150,33 @@ public class PopularWordsRequest extends Request<PopularWordsResponse> {
         });
     }
 
+    protected boolean isCacheable() {
+        // the cached candidates are the top words only, so a larger request would be cut short.
+        return cache != null && Math.max(size, windowSize) + excludeWords.size() <= cache.getCandidateSize();
+    }
+
+    @Override
+    protected SearchRequestBuilder createSearchRequest(final Client client) {
+        final SearchRequestBuilder builder = client.prepareSearch(index);
+        if (!Strings.isNullOrEmpty(type)) {
+            builder.setTypes(type);
+        }
+        builder.setSize(size);
+        builder.setQuery(buildQuery());
+        builder.setRescorer(buildRescore(), windowSize);
+        return builder;
+    }
+
     @Override
     protected String getValidationError() {
         return null;
     }
 
     protected QueryBuilder buildQuery() {
+        return buildQuery(excludeWords);
+    }
+
+    protected QueryBuilder buildQuery(final List<String> excludeWords) {
         final BoolQueryBuilder queryBuilder = QueryBuilders.boolQuery();
         queryBuilder.must(QueryBuilders.termQuery(FieldNames.KINDS, SuggestItem.Kind.QUERY.toString()));
         queryBuilder.mustNot(QueryBuilders.existsQuery(FieldNames.READING_PREFIX + "1"));
@@ -171,7 +208,84 @@ public class PopularWordsRequest extends Request<PopularWordsResponse> {
                 .setQueryWeight(0).setRescoreQueryWeight(1);
     }
 
-    protected PopularWordsResponse createResponse(final SearchResponse searchResponse) {
+    protected PopularWordsResponse createCachedResponse(final PopularWordsCache.Candidates candidates, final long start) {
+        final List<SuggestItem> filteredItems = candidates.getItems().stream().filter(item -> !excludeWords.contains(item.getText()))
+                .collect(Collectors.toList());
+        final int window = Math.min(windowSize, filteredItems.size());
+        final List<SuggestItem> windowItems = new ArrayList<>(filteredItems.subList(0, window));
+        Collections.shuffle(windowItems, new Random(seed.hashCode()));
+        windowItems.addAll(filteredItems.subList(window, filteredItems.size()));
+
+        final List<String> words = new ArrayList<>();
+        final List<SuggestItem> items = new ArrayList<>();
+        for (int i = 0; i < windowItems.size() && i < size; i++) {
+            final SuggestItem item = windowItems.get(i);
+            words.add(item.getText());
+            if (detail) {
+                items.add(item);
+            }
+        }
+
+        final long total = candidates.getTotal() - (candidates.getItems().size() - filteredItems.size());
+        return new PopularWordsResponse(candidates.getIndex(), System.currentTimeMillis() - start, words, total, items);
+    }
+
+    protected Deferred<PopularWordsCache.Candidates>.Promise loadCandidates(final Client client) {
+        final Deferred<PopularWordsCache.Candidates> deferred = new Deferred<>();
+        final SearchRequestBuilder builder = client.prepareSearch(index);
+        if (!Strings.isNullOrEmpty(type)) {
+            builder.setTypes(type);
+        }
+        builder.setSize(cache.getCandidateSize());
+        builder.setQuery(buildQuery(Collections.emptyList()));
+        SuggestUtil.execute(client, SearchAction.INSTANCE, builder.request(), deferred, new ActionListener<SearchResponse>() {
+            @Override
+            public void onResponse(final SearchResponse searchResponse) {
+                if (searchResponse.getFailedShards() > 0) {
+                    deferred.reject(new SuggesterException("Search failure. Failed shards num:" + searchResponse.getFailedShards()));
+                    return;
+                }
+                try {
+                    deferred.resolve(createCandidates(searchResponse));
+                } catch (final Exception e) {
+                    deferred.reject(e);
+                }
+            }
+
+            @Override
+            public void onFailure(final Exception e) {
+                deferred.reject(e);
+            }
+        });
+        return deferred.promise();
+    }
+
+    protected PopularWordsCache.Candidates createCandidates(final SearchResponse searchResponse) {
+        final SearchHit[] hits = searchResponse.getHits().getHits();
+        final List<SuggestItem> items = new ArrayList<>(hits.length);
+        for (final SearchHit hit : hits) {
+            items.add(SuggestItem.parseSource(hit.getSourceAsMap()));
+        }
+        final String index = hits.length > 0 ? hits[0].getIndex() : SuggestConstants.EMPTY_STRING;
+        return new PopularWordsCache.Candidates(index, searchResponse.getHits().getTotalHits().value, items);
+    }
+
+    protected String getCacheKey() {
+        final StringBuilder buf = new StringBuilder(100);
+        buf.append(index).append('\n').append(type).append('\n').append(queryFreqThreshold);
+        appendKeyValues(buf, tags);
+        appendKeyValues(buf, roles);
+        appendKeyValues(buf, fields);
+        return buf.toString();
+    }
+
+    private void appendKeyValues(final StringBuilder buf, final List<String> values) {
+        buf.append('\n');
+        values.stream().distinct().sorted().forEach(value -> buf.append(value).append('\t'));
+    }
+
+    @Override
+    public PopularWordsResponse createResponse(final SearchResponse searchResponse) {
         final SearchHit[] hits = searchResponse.getHits().getHits();
         final List<String> words = new ArrayList<>();
         final List<SuggestItem> items = new ArrayList<>();
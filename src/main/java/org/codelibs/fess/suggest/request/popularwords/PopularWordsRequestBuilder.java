@@ -15,6 +15,8 @@
  */
 package org.codelibs.fess.suggest.request.popularwords;
 
+import java.util.concurrent.Executor;
+
 import org.codelibs.fess.suggest.request.RequestBuilder;
 import org.elasticsearch.client.Client;
 
@@ -68,8 +70,18 @@ public class PopularWordsRequestBuilder extends RequestBuilder<PopularWordsReque
         return this;
     }
 
+    public PopularWordsRequestBuilder setCache(final PopularWordsCache cache) {
+        request.setCache(cache);
+        return this;
+    }
+
     public PopularWordsRequestBuilder setQueryFreqThreshold(final int queryFreqThreshold) {
         request.setQueryFreqThreshold(queryFreqThreshold);
         return this;
     }
+
+    public PopularWordsRequestBuilder setCallbackExecutor(final Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+        return this;
+    }
 }
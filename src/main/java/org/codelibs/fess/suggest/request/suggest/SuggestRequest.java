@@ -18,18 +18,26 @@ package org.codelibs.fess.suggest.request.suggest;
 import java.io.IOException;
 import java.lang.Character.UnicodeBlock;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.codelibs.fess.suggest.concurrent.Deferred;
 import org.codelibs.fess.suggest.constants.FieldNames;
 import org.codelibs.fess.suggest.constants.SuggestConstants;
 import org.codelibs.fess.suggest.converter.ReadingConverter;
+import org.codelibs.fess.suggest.engine.LocalSuggestEngine;
+import org.codelibs.fess.suggest.engine.LocalSuggestResult;
 import org.codelibs.fess.suggest.entity.SuggestItem;
 import org.codelibs.fess.suggest.exception.SuggesterException;
 import org.codelibs.fess.suggest.normalizer.Normalizer;
-import org.codelibs.fess.suggest.request.Request;
+import org.codelibs.fess.suggest.request.SearchableRequest;
+import org.codelibs.fess.suggest.util.SuggestUtil;
 import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.SearchAction;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.Client;
@@ -45,7 +53,9 @@ import org.elasticsearch.index.query.functionscore.ScoreFunctionBuilders;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.sort.SortOrder;
 
-public class SuggestRequest extends Request<SuggestResponse> {
+public class SuggestRequest extends SearchableRequest<SuggestResponse> {
+    private static final Logger logger = LogManager.getLogger(SuggestRequest.class);
+
     private String index = null;
 
     private String type = null;
@@ -70,6 +80,10 @@ public class SuggestRequest extends Request<SuggestResponse> {
 
     private Normalizer normalizer;
 
+    private SuggestSession session;
+
+    private LocalSuggestEngine localSuggestEngine;
+
     private float prefixMatchWeight = 2.0f;
 
     private boolean matchWordFirst = true;
@@ -120,6 +134,14 @@ public class SuggestRequest extends Request<SuggestResponse> {
         this.normalizer = normalizer;
     }
 
+    public void setSession(final SuggestSession session) {
+        this.session = session;
+    }
+
+    public void setLocalSuggestEngine(final LocalSuggestEngine localSuggestEngine) {
+        this.localSuggestEngine = localSuggestEngine;
+    }
+
     public void setPrefixMatchWeight(final float prefixMatchWeight) {
         this.prefixMatchWeight = prefixMatchWeight;
     }
@@ -136,6 +158,24 @@ public class SuggestRequest extends Request<SuggestResponse> {
         this.languages.add(lang);
     }
 
+    public String getCoalescingKey() {
+        final StringBuilder buf = new StringBuilder(100);
+        buf.append(index).append('\n').append(type).append('\n').append(query).append('\n').append(size);
+        appendKeyValues(buf, tags);
+        appendKeyValues(buf, roles);
+        appendKeyValues(buf, fields);
+        appendKeyValues(buf, kinds);
+        appendKeyValues(buf, languages);
+        buf.append('\n').append(suggestDetail).append('\n').append(prefixMatchWeight).append('\n').append(matchWordFirst).append('\n')
+                .append(skipDuplicateWords).append('\n').append(localSuggestEngine != null);
+        return buf.toString();
+    }
+
+    private void appendKeyValues(final StringBuilder buf, final List<String> values) {
+        buf.append('\n');
+        values.stream().distinct().sorted().forEach(value -> buf.append(value).append('\t'));
+    }
+
     @Override
     protected String getValidationError() {
         return null;
@@ -143,6 +183,35 @@ public class SuggestRequest extends Request<SuggestResponse> {
 
     @Override
     protected void processRequest(final Client client, final Deferred<SuggestResponse> deferred) {
+        if (localSuggestEngine != null && localSuggestEngine.isAvailable()) {
+            try {
+                deferred.resolve(createLocalResponse());
+                return;
+            } catch (final Exception e) {
+                logger.warn("Failed to search the local suggest index. Falling back to the search request.", e);
+            }
+        }
+
+        final SearchRequestBuilder builder = createSearchRequest(client);
+        SuggestUtil.execute(client, SearchAction.INSTANCE, builder.request(), deferred, new ActionListener<SearchResponse>() {
+            @Override
+            public void onResponse(final SearchResponse searchResponse) {
+                if (searchResponse.getFailedShards() > 0) {
+                    deferred.reject(new SuggesterException("Search failure. Failed shards num:" + searchResponse.getFailedShards()));
+                } else {
+                    deferred.resolve(createResponse(searchResponse));
+                }
+            }
+
+            @Override
+            public void onFailure(final Exception e) {
+                deferred.reject(new SuggesterException(e.getMessage(), e));
+            }
+        });
+    }
+
+    @Override
+    protected SearchRequestBuilder createSearchRequest(final Client client) {
         final SearchRequestBuilder builder = client.prepareSearch(index);
         if (!Strings.isNullOrEmpty(type)) {
             builder.setTypes(type);
@@ -188,22 +257,7 @@ public class SuggestRequest extends Request<SuggestResponse> {
         } else {
             builder.setQuery(queryBuilder);
         }
-
-        builder.execute(new ActionListener<SearchResponse>() {
-            @Override
-            public void onResponse(final SearchResponse searchResponse) {
-                if (searchResponse.getFailedShards() > 0) {
-                    deferred.reject(new SuggesterException("Search failure. Failed shards num:" + searchResponse.getFailedShards()));
-                } else {
-                    deferred.resolve(createResponse(searchResponse));
-                }
-            }
-
-            @Override
-            public void onFailure(final Exception e) {
-                deferred.reject(new SuggesterException(e.getMessage(), e));
-            }
-        });
+        return builder;
     }
 
     private boolean isSingleWordQuery(final String query) {
@@ -217,39 +271,26 @@ public class SuggestRequest extends Request<SuggestResponse> {
                 queryBuilder = QueryBuilders.matchAllQuery();
             } else {
                 final boolean prefixQuery = !q.endsWith(" ") && !q.endsWith("　");
-                List<String> readingList = new ArrayList<>();
 
                 final String[] langsArray = languages.toArray(new String[languages.size()]);
 
                 final BoolQueryBuilder boolQueryBuilder = QueryBuilders.boolQuery();
-                final String[] queries = q.replaceAll("　", " ").replaceAll(" +", " ").trim().split(" ");
+                final String[] queries = splitQuery(q);
                 for (int i = 0; i < queries.length; i++) {
                     final String fieldName = FieldNames.READING_PREFIX + i;
-
-                    final String query;
-                    if (normalizer == null) {
-                        query = queries[i];
-                    } else {
-                        query = normalizer.normalize(queries[i], "", langsArray);
-                    }
-
-                    if (readingConverter == null) {
-                        readingList.add(query);
-                    } else {
-                        readingList = readingConverter.convert(query, "", langsArray);
-                    }
+                    final boolean prefixWord = i + 1 == queries.length && prefixQuery;
+                    final List<String> readingList = getReadingList(queries[i], !prefixWord, langsArray);
 
                     final BoolQueryBuilder readingQueryBuilder = QueryBuilders.boolQuery().minimumShouldMatch(1);
                     final int readingNum = readingList.size();
                     for (int readingCount = 0; readingCount < readingNum; readingCount++) {
                         final String reading = readingList.get(readingCount);
-                        if (i + 1 == queries.length && prefixQuery) {
+                        if (prefixWord) {
                             readingQueryBuilder.should(QueryBuilders.prefixQuery(fieldName, reading));
                         } else {
                             readingQueryBuilder.should(QueryBuilders.termQuery(fieldName, reading));
                         }
                     }
-                    readingList.clear();
                     boolQueryBuilder.must(readingQueryBuilder);
                 }
                 queryBuilder = boolQueryBuilder;
@@ -261,6 +302,38 @@ public class SuggestRequest extends Request<SuggestResponse> {
         }
     }
 
+    protected String[] splitQuery(final String q) {
+        return q.replaceAll("　", " ").replaceAll(" +", " ").trim().split(" ");
+    }
+
+    protected List<String> getReadingList(final String word, final boolean stableWord, final String[] langs) throws IOException {
+        if (session != null) {
+            final List<String> cachedReadingList = session.getReadings(word, langs);
+            if (cachedReadingList != null) {
+                return cachedReadingList;
+            }
+        }
+
+        final String query;
+        if (normalizer == null) {
+            query = word;
+        } else {
+            query = normalizer.normalize(word, "", langs);
+        }
+
+        final List<String> readingList;
+        if (readingConverter == null) {
+            readingList = Collections.singletonList(query);
+        } else {
+            readingList = readingConverter.convert(query, "", langs);
+        }
+
+        if (session != null && stableWord) {
+            session.putReadings(word, readingList, langs);
+        }
+        return readingList;
+    }
+
     protected QueryBuilder buildFilterQuery(final String fieldName, final List<String> words) {
         final BoolQueryBuilder boolQueryBuilder = QueryBuilders.boolQuery().minimumShouldMatch(1);
         words.stream().forEach(word -> boolQueryBuilder.should(QueryBuilders.termQuery(fieldName, word)));
@@ -291,14 +364,9 @@ public class SuggestRequest extends Request<SuggestResponse> {
         return functionScoreQueryBuilder;
     }
 
-    protected SuggestResponse createResponse(final SearchResponse searchResponse) {
+    @Override
+    public SuggestResponse createResponse(final SearchResponse searchResponse) {
         final SearchHit[] hits = searchResponse.getHits().getHits();
-        final List<String> words = new ArrayList<>();
-        final List<String> firstWords = new ArrayList<>();
-        final List<String> secondWords = new ArrayList<>();
-        final List<SuggestItem> firstItems = new ArrayList<>();
-        final List<SuggestItem> secondItems = new ArrayList<>();
-
         final String index;
         if (hits.length > 0) {
             index = hits[0].getIndex();
@@ -306,13 +374,50 @@ public class SuggestRequest extends Request<SuggestResponse> {
             index = SuggestConstants.EMPTY_STRING;
         }
 
+        final List<Map<String, Object>> sources = new ArrayList<>(hits.length);
+        for (final SearchHit hit : hits) {
+            sources.add(hit.getSourceAsMap());
+        }
+        return createResponse(index, searchResponse.getTook().getMillis(), searchResponse.getHits().getTotalHits().value, sources,
+                source -> source.get(FieldNames.TEXT).toString(), SuggestItem::parseSource);
+    }
+
+    protected SuggestResponse createLocalResponse() throws IOException {
+        final List<List<String>> readings = new ArrayList<>();
+        boolean prefixQuery = false;
+        if (!Strings.isNullOrEmpty(query)) {
+            prefixQuery = !query.endsWith(" ") && !query.endsWith("　");
+            final String[] langsArray = languages.toArray(new String[languages.size()]);
+            final String[] queries = splitQuery(query);
+            for (int i = 0; i < queries.length; i++) {
+                final boolean prefixWord = i + 1 == queries.length && prefixQuery;
+                readings.add(getReadingList(queries[i], !prefixWord, langsArray));
+            }
+        }
+
+        final String boostPrefix = isSingleWordQuery(query) && !isHiraganaQuery(query) ? query : null;
+        final List<String> filterRoles = new ArrayList<>(roles);
+        filterRoles.add(SuggestConstants.DEFAULT_ROLE);
+        final LocalSuggestResult result = localSuggestEngine.search(readings, prefixQuery, boostPrefix, prefixMatchWeight,
+                skipDuplicateWords ? size * 2 : size, tags, filterRoles, fields, kinds);
+        return createResponse(result.getIndex(), result.getTookMs(), result.getTotal(), result.getItems(), SuggestItem::getText,
+                item -> item);
+    }
+
+    protected <T> SuggestResponse createResponse(final String index, final long tookMs, final long total, final List<T> hits,
+            final Function<T, String> textFunc, final Function<T, SuggestItem> itemFunc) {
+        final List<String> words = new ArrayList<>();
+        final List<String> firstWords = new ArrayList<>();
+        final List<String> secondWords = new ArrayList<>();
+        final List<SuggestItem> firstItems = new ArrayList<>();
+        final List<SuggestItem> secondItems = new ArrayList<>();
+
         final boolean singleWordQuery = isSingleWordQuery(query);
         final boolean hiraganaQuery = isHiraganaQuery(query);
-        for (int i = 0; i < hits.length && words.size() < size; i++) {
-            final SearchHit hit = hits[i];
+        for (int i = 0; i < hits.size() && words.size() < size; i++) {
+            final T hit = hits.get(i);
 
-            final Map<String, Object> source = hit.getSourceAsMap();
-            final String text = source.get(FieldNames.TEXT).toString();
+            final String text = textFunc.apply(hit);
             if (skipDuplicateWords) {
                 final String duplicateCheckStr = text.replace(" ", "");
                 if (words.stream().map(word -> word.replace(" ", "")).anyMatch(word -> word.equals(duplicateCheckStr))) {
@@ -330,7 +435,7 @@ public class SuggestRequest extends Request<SuggestResponse> {
             }
 
             if (suggestDetail) {
-                final SuggestItem item = SuggestItem.parseSource(source);
+                final SuggestItem item = itemFunc.apply(hit);
                 if (isFirstWords) {
                     firstItems.add(item);
                 } else {
@@ -340,8 +445,7 @@ public class SuggestRequest extends Request<SuggestResponse> {
         }
         firstWords.addAll(secondWords);
         firstItems.addAll(secondItems);
-        return new SuggestResponse(index, searchResponse.getTook().getMillis(), firstWords, searchResponse.getHits().getTotalHits().value,
-                firstItems);
+        return new SuggestResponse(index, tookMs, firstWords, total, firstItems);
     }
 
     protected boolean isFirstWordMatching(final boolean singleWordQuery, final boolean hiraganaQuery, final String text) {
@@ -15,18 +15,43 @@
  */
 package org.codelibs.fess.suggest.request.suggest;
 
+import java.util.concurrent.Executor;
+
+import org.codelibs.fess.suggest.concurrent.Deferred;
+import org.codelibs.fess.suggest.concurrent.RequestCoalescer;
 import org.codelibs.fess.suggest.converter.ReadingConverter;
+import org.codelibs.fess.suggest.engine.LocalSuggestEngine;
 import org.codelibs.fess.suggest.normalizer.Normalizer;
 import org.codelibs.fess.suggest.request.RequestBuilder;
 import org.elasticsearch.client.Client;
 
 public class SuggestRequestBuilder extends RequestBuilder<SuggestRequest, SuggestResponse> {
+    protected RequestCoalescer<SuggestResponse> coalescer;
+
     public SuggestRequestBuilder(final Client client, final ReadingConverter readingConverter, final Normalizer normalizer) {
         super(client, new SuggestRequest());
         request.setReadingConverter(readingConverter);
         request.setNormalizer(normalizer);
     }
 
+    public SuggestRequestBuilder setCoalescer(final RequestCoalescer<SuggestResponse> coalescer) {
+        this.coalescer = coalescer;
+        return this;
+    }
+
+    @Override
+    public Deferred<SuggestResponse>.Promise execute() {
+        if (coalescer == null) {
+            return super.execute();
+        }
+        return coalescer.execute(request.getCoalescingKey(), super::execute);
+    }
+
+    public SuggestRequestBuilder setCallbackExecutor(final Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+        return this;
+    }
+
     public SuggestRequestBuilder setIndex(final String index) {
         request.setIndex(index);
         return this;
@@ -72,6 +97,16 @@ public class SuggestRequestBuilder extends RequestBuilder<SuggestRequest, Sugges
         return this;
     }
 
+    public SuggestRequestBuilder setSession(final SuggestSession session) {
+        request.setSession(session);
+        return this;
+    }
+
+    public SuggestRequestBuilder setLocalSuggestEngine(final LocalSuggestEngine localSuggestEngine) {
+        request.setLocalSuggestEngine(localSuggestEngine);
+        return this;
+    }
+
     public SuggestRequestBuilder setPrefixMatchWeight(final float prefixMatchWeight) {
         request.setPrefixMatchWeight(prefixMatchWeight);
         return this;
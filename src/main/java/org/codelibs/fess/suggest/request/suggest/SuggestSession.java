@@ -0,0 +1,63 @@
+/*
+ * Copyright 2009-2019 the CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.suggest.request.suggest;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SuggestSession {
+    protected final int maxWordNum;
+
+    protected final Map<String, List<String>> readingMap;
+
+    public SuggestSession() {
+        this(100);
+    }
+
+    public SuggestSession(final int maxWordNum) {
+        this.maxWordNum = maxWordNum;
+        this.readingMap = new LinkedHashMap<String, List<String>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, List<String>> eldest) {
+                return size() > SuggestSession.this.maxWordNum;
+            }
+        };
+    }
+
+    public synchronized List<String> getReadings(final String word, final String... langs) {
+        return readingMap.get(createKey(word, langs));
+    }
+
+    public synchronized void putReadings(final String word, final List<String> readings, final String... langs) {
+        readingMap.put(createKey(word, langs), Collections.unmodifiableList(readings));
+    }
+
+    public synchronized int getWordNum() {
+        return readingMap.size();
+    }
+
+    public synchronized void clear() {
+        readingMap.clear();
+    }
+
+    protected String createKey(final String word, final String... langs) {
+        return String.join(",", langs) + '\t' + word;
+    }
+}
@@ -22,10 +22,13 @@ import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import org.codelibs.core.CoreLibConstants;
 import org.codelibs.core.lang.StringUtil;
@@ -33,7 +36,12 @@ import org.codelibs.fess.suggest.constants.FieldNames;
 import org.codelibs.fess.suggest.exception.SuggestSettingsException;
 import org.codelibs.fess.suggest.util.SuggestUtil;
 import org.elasticsearch.action.admin.indices.create.CreateIndexResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.support.WriteRequest;
+import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
@@ -81,6 +89,20 @@ public class ArraySettings {
         addToArrayIndex(arraySettingsIndexName, settingsId, createId(key, value), source);
     }
 
+    public void addAll(final String key, final Collection<?> values) {
+        final Map<String, Map<String, Object>> sources = new LinkedHashMap<>();
+        final String timestamp = DateTimeFormatter.ISO_INSTANT.format(ZonedDateTime.now());
+        for (final Object value : values) {
+            final Map<String, Object> source = new HashMap<>();
+            source.put(FieldNames.ARRAY_KEY, key);
+            source.put(FieldNames.ARRAY_VALUE, value);
+            source.put(FieldNames.TIMESTAMP, timestamp);
+            sources.put(createId(key, value), source);
+        }
+
+        addAllToArrayIndex(arraySettingsIndexName, settingsId, sources);
+    }
+
     public void delete(final String key) {
         deleteKeyFromArray(arraySettingsIndexName, settingsId, key);
     }
@@ -89,6 +111,11 @@ public class ArraySettings {
         deleteFromArray(arraySettingsIndexName, settingsId, createId(key, value));
     }
 
+    public void deleteAll(final String key, final Collection<String> values) {
+        deleteAllFromArray(arraySettingsIndexName, settingsId,
+                values.stream().map(value -> createId(key, value)).collect(Collectors.toList()));
+    }
+
     protected String createArraySettingsIndexName(final String settingsIndexName) {
         return settingsIndexName + "_array";
     }
@@ -97,9 +124,13 @@ public class ArraySettings {
         return encoder.encodeToString(("key:" + key + "value:" + value).getBytes(CoreLibConstants.CHARSET_UTF_8));
     }
 
-    @SuppressWarnings("unchecked")
     protected Map<String, Object>[] getFromArrayIndex(final String index, final String type, final String key) {
         final String actualIndex = index + "." + type.toLowerCase(Locale.ENGLISH);
+        return settings.getArrayCache(actualIndex, key, () -> loadFromArrayIndex(actualIndex, type, key));
+    }
+
+    @SuppressWarnings("unchecked")
+    protected Map<String, Object>[] loadFromArrayIndex(final String actualIndex, final String type, final String key) {
         try {
             SearchResponse response = client.prepareSearch().setIndices(actualIndex).setTypes(type).setScroll(settings.getScrollTimeout())
                     .setQuery(QueryBuilders.termQuery(FieldNames.ARRAY_KEY, key)).setSize(1000).execute()
@@ -150,11 +181,36 @@ public class ArraySettings {
         try {
             final XContentBuilder builder = JsonXContent.contentBuilder().map(source);
             builder.flush();
-            client.prepareUpdate().setIndex(actualIndex).setType(type).setId(id).setDocAsUpsert(true).setDoc(builder).execute()
-                    .actionGet(settings.getIndexTimeout());
-            client.admin().indices().prepareRefresh().setIndices(actualIndex).execute().actionGet(settings.getIndicesTimeout());
+            client.prepareUpdate().setIndex(actualIndex).setType(type).setId(id).setDocAsUpsert(true).setDoc(builder)
+                    .setRefreshPolicy(WriteRequest.RefreshPolicy.WAIT_UNTIL).execute().actionGet(settings.getIndexTimeout());
         } catch (final Exception e) {
             throw new SuggestSettingsException("Failed to add to array.", e);
+        } finally {
+            settings.clearArrayCache(actualIndex);
+        }
+    }
+
+    protected void addAllToArrayIndex(final String index, final String type, final Map<String, Map<String, Object>> sources) {
+        if (sources.isEmpty()) {
+            return;
+        }
+        final String actualIndex = index + "." + type.toLowerCase(Locale.ENGLISH);
+        try {
+            final BulkRequestBuilder bulkRequestBuilder = client.prepareBulk();
+            for (final Map.Entry<String, Map<String, Object>> entry : sources.entrySet()) {
+                final XContentBuilder builder = JsonXContent.contentBuilder().map(entry.getValue());
+                builder.flush();
+                bulkRequestBuilder.add(new UpdateRequest(actualIndex, type, entry.getKey()).docAsUpsert(true).doc(builder));
+            }
+            bulkRequestBuilder.setRefreshPolicy(WriteRequest.RefreshPolicy.WAIT_UNTIL);
+            final BulkResponse bulkResponse = bulkRequestBuilder.execute().actionGet(settings.getBulkTimeout());
+            if (bulkResponse.hasFailures()) {
+                throw new SuggestSettingsException(bulkResponse.buildFailureMessage());
+            }
+        } catch (final Exception e) {
+            throw new SuggestSettingsException("Failed to add to array.", e);
+        } finally {
+            settings.clearArrayCache(actualIndex);
         }
     }
 
@@ -164,16 +220,40 @@ public class ArraySettings {
             SuggestUtil.deleteByQuery(client, settings, actualIndex, type, QueryBuilders.termQuery(FieldNames.ARRAY_KEY, key));
         } catch (final Exception e) {
             throw new SuggestSettingsException("Failed to delete all from array.", e);
+        } finally {
+            settings.clearArrayCache(actualIndex);
         }
     }
 
     protected void deleteFromArray(final String index, final String type, final String id) {
         final String actualIndex = index + "." + type.toLowerCase(Locale.ENGLISH);
         try {
-            client.prepareDelete().setIndex(actualIndex).setType(type).setId(id).execute().actionGet(settings.getIndexTimeout());
-            client.admin().indices().prepareRefresh().setIndices(actualIndex).execute().actionGet(settings.getIndicesTimeout());
+            client.prepareDelete().setIndex(actualIndex).setType(type).setId(id).setRefreshPolicy(WriteRequest.RefreshPolicy.WAIT_UNTIL)
+                    .execute().actionGet(settings.getIndexTimeout());
+        } catch (final Exception e) {
+            throw new SuggestSettingsException("Failed to delete from array.", e);
+        } finally {
+            settings.clearArrayCache(actualIndex);
+        }
+    }
+
+    protected void deleteAllFromArray(final String index, final String type, final Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        final String actualIndex = index + "." + type.toLowerCase(Locale.ENGLISH);
+        try {
+            final BulkRequestBuilder bulkRequestBuilder = client.prepareBulk();
+            ids.forEach(id -> bulkRequestBuilder.add(new DeleteRequest(actualIndex, type, id)));
+            bulkRequestBuilder.setRefreshPolicy(WriteRequest.RefreshPolicy.WAIT_UNTIL);
+            final BulkResponse bulkResponse = bulkRequestBuilder.execute().actionGet(settings.getBulkTimeout());
+            if (bulkResponse.hasFailures()) {
+                throw new SuggestSettingsException(bulkResponse.buildFailureMessage());
+            }
         } catch (final Exception e) {
             throw new SuggestSettingsException("Failed to delete from array.", e);
+        } finally {
+            settings.clearArrayCache(actualIndex);
         }
     }
 
@@ -18,9 +18,11 @@ package org.codelibs.fess.suggest.settings;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import org.codelibs.fess.suggest.exception.SuggestSettingsException;
+import org.codelibs.fess.suggest.util.BadWordMatcher;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.Strings;
 
@@ -31,6 +33,8 @@ public class BadWordSettings {
 
     protected static String[] defaultWords = null;
 
+    protected volatile BadWordMatcher matcher = null;
+
     protected BadWordSettings(final SuggestSettings settings, final Client client, final String settingsIndexName,
             final String settingsId) {
         this.arraySettings = new ArraySettings(settings, client, settingsIndexName, settingsId) {
@@ -56,20 +60,50 @@ public class BadWordSettings {
         return concat;
     }
 
+    public BadWordMatcher getMatcher() {
+        final String[] badWords = get(true);
+        final BadWordMatcher current = matcher;
+        if (current != null && current.isSameWords(badWords)) {
+            return current;
+        }
+        final BadWordMatcher newMatcher = new BadWordMatcher(badWords);
+        matcher = newMatcher;
+        return newMatcher;
+    }
+
     public void add(final String badWord) {
         final String validationError = getValidationError(badWord);
         if (validationError != null) {
             throw new IllegalArgumentException("Validation error. " + validationError);
         }
         arraySettings.add(BAD_WORD_SETTINGD_KEY, badWord);
+        matcher = null;
+    }
+
+    public void addAll(final Collection<String> badWords) {
+        for (final String badWord : badWords) {
+            final String validationError = getValidationError(badWord);
+            if (validationError != null) {
+                throw new IllegalArgumentException("Validation error. " + validationError);
+            }
+        }
+        arraySettings.addAll(BAD_WORD_SETTINGD_KEY, badWords);
+        matcher = null;
     }
 
     public void delete(final String badWord) {
         arraySettings.delete(BAD_WORD_SETTINGD_KEY, badWord);
+        matcher = null;
+    }
+
+    public void deleteAll(final Collection<String> badWords) {
+        arraySettings.deleteAll(BAD_WORD_SETTINGD_KEY, badWords);
+        matcher = null;
     }
 
     public void deleteAll() {
         arraySettings.delete(BAD_WORD_SETTINGD_KEY);
+        matcher = null;
     }
 
     protected String getValidationError(final String badWord) {
@@ -17,7 +17,9 @@ package org.codelibs.fess.suggest.settings;
 
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -70,6 +72,18 @@ public class ElevateWordSettings {
     }
 
     public void add(final ElevateWord elevateWord) {
+        arraySettings.addToArrayIndex(arraySettings.arraySettingsIndexName, arraySettings.settingsId,
+                arraySettings.createId(ELEVATE_WORD_SETTINGD_KEY, elevateWord.getElevateWord()), createSource(elevateWord));
+    }
+
+    public void addAll(final Collection<ElevateWord> elevateWords) {
+        final Map<String, Map<String, Object>> sources = new LinkedHashMap<>();
+        elevateWords.forEach(elevateWord -> sources.put(arraySettings.createId(ELEVATE_WORD_SETTINGD_KEY, elevateWord.getElevateWord()),
+                createSource(elevateWord)));
+        arraySettings.addAllToArrayIndex(arraySettings.arraySettingsIndexName, arraySettings.settingsId, sources);
+    }
+
+    protected Map<String, Object> createSource(final ElevateWord elevateWord) {
         final Map<String, Object> source = new HashMap<>();
         source.put(FieldNames.ARRAY_KEY, ELEVATE_WORD_SETTINGD_KEY);
         source.put(FieldNames.ARRAY_VALUE, elevateWord.getElevateWord());
@@ -79,15 +93,17 @@ public class ElevateWordSettings {
         source.put(ELEVATE_WORD_TAGS, elevateWord.getTags());
         source.put(ELEVATE_WORD_ROLES, elevateWord.getRoles());
         source.put(FieldNames.TIMESTAMP, DateTimeFormatter.ISO_INSTANT.format(ZonedDateTime.now()));
-
-        arraySettings.addToArrayIndex(arraySettings.arraySettingsIndexName, arraySettings.settingsId,
-                arraySettings.createId(ELEVATE_WORD_SETTINGD_KEY, elevateWord.getElevateWord()), source);
+        return source;
     }
 
     public void delete(final String elevateWord) {
         arraySettings.delete(ELEVATE_WORD_SETTINGD_KEY, elevateWord);
     }
 
+    public void deleteAll(final Collection<String> elevateWords) {
+        arraySettings.deleteAll(ELEVATE_WORD_SETTINGD_KEY, elevateWords);
+    }
+
     public void deleteAll() {
         arraySettings.delete(ELEVATE_WORD_SETTINGD_KEY);
     }
@@ -20,14 +20,22 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.codelibs.core.lang.StringUtil;
 import org.codelibs.fess.suggest.exception.SuggestSettingsException;
 import org.codelibs.fess.suggest.exception.SuggesterException;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.get.GetResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.collect.Tuple;
@@ -37,6 +45,8 @@ import org.elasticsearch.common.xcontent.json.JsonXContent;
 import org.elasticsearch.index.IndexNotFoundException;
 
 public class SuggestSettings {
+    private static final Logger logger = LogManager.getLogger(SuggestSettings.class);
+
     protected final String settingsId;
 
     protected final Client client;
@@ -54,6 +64,24 @@ public class SuggestSettings {
 
     protected TimeoutSettings timeoutSettings;
 
+    protected long cacheCheckInterval = 10 * 1000L;
+
+    protected volatile Map<String, Object> settingsCache = null;
+
+    protected volatile long settingsCacheVersion = -1;
+
+    protected volatile long settingsCacheCheckedTime = 0;
+
+    protected final AtomicBoolean checkingSettingsCache = new AtomicBoolean(false);
+
+    protected final Map<String, ArrayCacheEntry> arraySettingsCache = new ConcurrentHashMap<>();
+
+    protected volatile ArraySettings arraySettings;
+
+    protected volatile BadWordSettings badWordSettings;
+
+    protected volatile ElevateWordSettings elevateWordSettings;
+
     public static class TimeoutSettings {
         protected String searchTimeout = "15s";
         protected String indexTimeout = "1m";
@@ -61,6 +89,8 @@ public class SuggestSettings {
         protected String indicesTimeout = "1m";
         protected String clusterTimeout = "1m";
         protected String scrollTimeout = "1m";
+        protected String forceMergeTimeout = "1h";
+        protected String byQueryTimeout = "1h";
     }
 
     public SuggestSettings(final Client client, final String settingsId, final Map<String, Object> initialSettings,
@@ -129,18 +159,137 @@ public class SuggestSettings {
 
             final List<Tuple<String, Object>> defaultArraySettings = defaultArraySettings();
             defaultArraySettings.addAll(arraySettings);
-            defaultArraySettings.forEach(t -> array().add(t.v1(), t.v2()));
+            final Map<String, List<Object>> arraySettingsMap = new LinkedHashMap<>();
+            defaultArraySettings.forEach(t -> arraySettingsMap.computeIfAbsent(t.v1(), k -> new ArrayList<>()).add(t.v2()));
+            arraySettingsMap.forEach((key, values) -> array().addAll(key, values));
         }
     }
 
     public Object get(final String key) {
+        return getSettingsCache().get(key);
+    }
+
+    protected Map<String, Object> getSettingsCache() {
+        final Map<String, Object> cache = settingsCache;
+        if (cache == null) {
+            return reloadSettingsCache();
+        }
+
+        if (System.currentTimeMillis() - settingsCacheCheckedTime > cacheCheckInterval
+                && checkingSettingsCache.compareAndSet(false, true)) {
+            // only one caller checks the version, in the background, and the others keep the current cache meanwhile.
+            settingsCacheCheckedTime = System.currentTimeMillis();
+            checkSettingsCache(cache);
+        }
+        return cache;
+    }
+
+    protected void checkSettingsCache(final Map<String, Object> cache) {
+        try {
+            client.prepareGet().setIndex(settingsIndexName).setType(settingsTypeName).setId(settingsId).setFetchSource(false)
+                    .execute(ActionListener.wrap(response -> {
+                        final long version = response.isExists() ? response.getVersion() : -1;
+                        if (version == settingsCacheVersion) {
+                            checkingSettingsCache.set(false);
+                            return;
+                        }
+                        client.prepareGet().setIndex(settingsIndexName).setType(settingsTypeName).setId(settingsId)
+                                .execute(ActionListener.wrap(getResponse -> {
+                                    updateSettingsCache(cache, getResponse);
+                                    checkingSettingsCache.set(false);
+                                }, this::onSettingsCacheCheckFailure));
+                    }, this::onSettingsCacheCheckFailure));
+        } catch (final Exception e) {
+            onSettingsCacheCheckFailure(e);
+        }
+    }
+
+    protected void onSettingsCacheCheckFailure(final Exception e) {
+        logger.warn("Failed to check suggest settings.", e);
+        checkingSettingsCache.set(false);
+    }
+
+    protected synchronized void updateSettingsCache(final Map<String, Object> cache, final GetResponse getResponse) {
+        if (settingsCache != cache) {
+            // reloaded or invalidated while checking, so the response may be older than the current cache.
+            return;
+        }
+        if (getResponse.isExists()) {
+            settingsCache = Collections.unmodifiableMap(new HashMap<>(getResponse.getSource()));
+            settingsCacheVersion = getResponse.getVersion();
+        } else {
+            settingsCache = Collections.emptyMap();
+            settingsCacheVersion = -1;
+        }
+    }
+
+    protected synchronized void invalidateSettingsCache() {
+        settingsCache = null;
+    }
+
+    protected synchronized Map<String, Object> reloadSettingsCache() {
+        if (settingsCache != null) {
+            // loaded by another caller while this one was waiting.
+            return settingsCache;
+        }
         final GetResponse getResponse = client.prepareGet().setIndex(settingsIndexName).setType(settingsTypeName).setId(settingsId)
                 .execute().actionGet(getSearchTimeout());
-        if (!getResponse.isExists()) {
+        final Map<String, Object> cache;
+        if (getResponse.isExists()) {
+            cache = Collections.unmodifiableMap(new HashMap<>(getResponse.getSource()));
+            settingsCacheVersion = getResponse.getVersion();
+        } else {
+            cache = Collections.emptyMap();
+            settingsCacheVersion = -1;
+        }
+        settingsCacheCheckedTime = System.currentTimeMillis();
+        settingsCache = cache;
+        return cache;
+    }
+
+    public void clearCache() {
+        invalidateSettingsCache();
+        arraySettingsCache.clear();
+    }
+
+    protected Map<String, Object>[] getArrayCache(final String index, final String key, final Supplier<Map<String, Object>[]> loader) {
+        final String cacheKey = index + '\n' + key;
+        final ArrayCacheEntry entry = arraySettingsCache.get(cacheKey);
+        if (entry != null && System.currentTimeMillis() - entry.timestamp <= cacheCheckInterval) {
+            return entry.values.clone();
+        }
+        final Map<String, Object>[] values = loader.get();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = unmodifiableMap(values[i]);
+        }
+        arraySettingsCache.put(cacheKey, new ArrayCacheEntry(values));
+        return values.clone();
+    }
+
+    protected static Map<String, Object> unmodifiableMap(final Map<String, Object> map) {
+        if (map == null) {
             return null;
         }
-        final Map<String, Object> map = getResponse.getSource();
-        return map.get(key);
+        final Map<String, Object> copy = new HashMap<>(map.size());
+        map.forEach((key, value) -> copy.put(key, unmodifiableValue(value)));
+        return Collections.unmodifiableMap(copy);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected static Object unmodifiableValue(final Object value) {
+        if (value instanceof Map) {
+            return unmodifiableMap((Map<String, Object>) value);
+        } else if (value instanceof List) {
+            final List<Object> copy = new ArrayList<>(((List<Object>) value).size());
+            ((List<Object>) value).forEach(v -> copy.add(unmodifiableValue(v)));
+            return Collections.unmodifiableList(copy);
+        }
+        return value;
+    }
+
+    protected void clearArrayCache(final String index) {
+        final String prefix = index + '\n';
+        arraySettingsCache.keySet().removeIf(cacheKey -> cacheKey.startsWith(prefix));
     }
 
     public String getAsString(final String key, final String defaultValue) {
@@ -213,6 +362,7 @@ public class SuggestSettings {
             client.prepareUpdate().setIndex(settingsIndexName).setType(settingsTypeName).setId(settingsId).setDocAsUpsert(true)
                     .setDoc(key, value).setRetryOnConflict(5).execute().actionGet(getIndexTimeout());
             client.admin().indices().prepareRefresh().setIndices(settingsIndexName).execute().actionGet(getIndicesTimeout());
+            invalidateSettingsCache();
         } catch (final Exception e) {
             throw new SuggestSettingsException("Failed to update suggestSettings.", e);
         }
@@ -225,13 +375,17 @@ public class SuggestSettings {
             client.prepareUpdate().setIndex(settingsIndexName).setType(settingsTypeName).setId(settingsId).setDocAsUpsert(true)
                     .setDoc(builder).setRetryOnConflict(5).execute().actionGet(getIndexTimeout());
             client.admin().indices().prepareRefresh().setIndices(settingsIndexName).execute().actionGet(getIndicesTimeout());
+            invalidateSettingsCache();
         } catch (final Exception e) {
             throw new SuggestSettingsException("Failed to update suggestSettings.", e);
         }
     }
 
     public ArraySettings array() {
-        return new ArraySettings(this, client, settingsIndexName, settingsId);
+        if (arraySettings == null) {
+            arraySettings = new ArraySettings(this, client, settingsIndexName, settingsId);
+        }
+        return arraySettings;
     }
 
     public AnalyzerSettings analyzer() {
@@ -239,11 +393,25 @@ public class SuggestSettings {
     }
 
     public BadWordSettings badword() {
-        return new BadWordSettings(this, client, settingsIndexName, settingsId);
+        if (badWordSettings == null) {
+            badWordSettings = new BadWordSettings(this, client, settingsIndexName, settingsId);
+        }
+        return badWordSettings;
     }
 
     public ElevateWordSettings elevateWord() {
-        return new ElevateWordSettings(this, client, settingsIndexName, settingsId);
+        if (elevateWordSettings == null) {
+            elevateWordSettings = new ElevateWordSettings(this, client, settingsIndexName, settingsId);
+        }
+        return elevateWordSettings;
+    }
+
+    public long getCacheCheckInterval() {
+        return cacheCheckInterval;
+    }
+
+    public void setCacheCheckInterval(final long cacheCheckInterval) {
+        this.cacheCheckInterval = cacheCheckInterval;
     }
 
     public String getSettingsIndexName() {
@@ -297,6 +465,16 @@ public class SuggestSettings {
         return new SuggestSettingsBuilder();
     }
 
+    protected static class ArrayCacheEntry {
+        protected final Map<String, Object>[] values;
+
+        protected final long timestamp = System.currentTimeMillis();
+
+        protected ArrayCacheEntry(final Map<String, Object>[] values) {
+            this.values = values;
+        }
+    }
+
     public static class DefaultKeys {
         public static final String INDEX = "index";
         public static final String TYPE = "type";
@@ -305,6 +483,7 @@ public class SuggestSettings {
         public static final String ROLE_FIELD_NAME = "roleFieldName";
         public static final String LANG_FIELD_NAME = "langFieldName";
         public static final String PARALLEL_PROCESSING = "parallel";
+        public static final String REBUILDING_INDEX = "rebuildingIndex";
 
         private DefaultKeys() {
         }
@@ -333,4 +512,12 @@ public class SuggestSettings {
     public String getClusterTimeout() {
         return timeoutSettings.clusterTimeout;
     }
+
+    public String getForceMergeTimeout() {
+        return timeoutSettings.forceMergeTimeout;
+    }
+
+    public String getByQueryTimeout() {
+        return timeoutSettings.byQueryTimeout;
+    }
 }
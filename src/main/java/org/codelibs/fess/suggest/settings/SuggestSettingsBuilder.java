@@ -31,6 +31,8 @@ public class SuggestSettingsBuilder {
 
     protected Map<String, Object> initialSettings = new HashMap<>();
 
+    protected long cacheCheckInterval = 10 * 1000L;
+
     public SuggestSettingsBuilder setSettingsIndexName(final String settingsIndexName) {
         this.settingsIndexName = settingsIndexName.toLowerCase(Locale.ENGLISH);
         return this;
@@ -76,7 +78,25 @@ public class SuggestSettingsBuilder {
         return this;
     }
 
+    public SuggestSettingsBuilder forceMergeTimeout(final String timeout) {
+        timeoutSettings.forceMergeTimeout = timeout;
+        return this;
+    }
+
+    public SuggestSettingsBuilder byQueryTimeout(final String timeout) {
+        timeoutSettings.byQueryTimeout = timeout;
+        return this;
+    }
+
+    public SuggestSettingsBuilder cacheCheckInterval(final long interval) {
+        cacheCheckInterval = interval;
+        return this;
+    }
+
     public SuggestSettings build(final Client client, final String id) {
-        return new SuggestSettings(client, id, initialSettings, settingsIndexName, settingsTypeName, timeoutSettings);
+        final SuggestSettings settings =
+                new SuggestSettings(client, id, initialSettings, settingsIndexName, settingsTypeName, timeoutSettings);
+        settings.setCacheCheckInterval(cacheCheckInterval);
+        return settings;
     }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2009-2019 the CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.suggest.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+public class BadWordMatcher {
+    protected final String[] words;
+
+    protected final List<Map<Character, Integer>> transitions = new ArrayList<>();
+
+    protected final int[] failures;
+
+    protected final boolean[] outputs;
+
+    public BadWordMatcher(final String[] words) {
+        this.words = words.clone();
+
+        final List<Boolean> outputList = new ArrayList<>();
+        transitions.add(new HashMap<>());
+        outputList.add(false);
+        for (final String word : words) {
+            if (word == null || word.isEmpty()) {
+                continue;
+            }
+            int state = 0;
+            for (int i = 0; i < word.length(); i++) {
+                final Character c = word.charAt(i);
+                Integer next = transitions.get(state).get(c);
+                if (next == null) {
+                    next = transitions.size();
+                    transitions.add(new HashMap<>());
+                    outputList.add(false);
+                    transitions.get(state).put(c, next);
+                }
+                state = next;
+            }
+            outputList.set(state, true);
+        }
+
+        failures = new int[transitions.size()];
+        outputs = new boolean[transitions.size()];
+        for (int i = 0; i < outputs.length; i++) {
+            outputs[i] = outputList.get(i);
+        }
+
+        final Queue<Integer> queue = new ArrayDeque<>();
+        for (final Integer child : transitions.get(0).values()) {
+            failures[child] = 0;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            final int state = queue.poll();
+            for (final Map.Entry<Character, Integer> entry : transitions.get(state).entrySet()) {
+                final int child = entry.getValue();
+                failures[child] = next(failures[state], entry.getKey());
+                outputs[child] = outputs[child] || outputs[failures[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    public boolean matches(final String text) {
+        if (text == null) {
+            return false;
+        }
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = next(state, text.charAt(i));
+            if (outputs[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isSameWords(final String[] words) {
+        return Arrays.equals(this.words, words);
+    }
+
+    public String[] getWords() {
+        return words.clone();
+    }
+
+    protected int next(final int state, final char c) {
+        int current = state;
+        while (true) {
+            final Integer next = transitions.get(current).get(c);
+            if (next != null) {
+                return next;
+            }
+            if (current == 0) {
+                return 0;
+            }
+            current = failures[current];
+        }
+    }
+}
@@ -25,8 +25,11 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.apache.lucene.queryparser.flexible.standard.StandardQueryParser;
 import org.apache.lucene.queryparser.flexible.standard.config.StandardQueryConfigHandler;
 import org.apache.lucene.search.BooleanClause;
@@ -34,6 +37,7 @@ import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
 import org.codelibs.core.CoreLibConstants;
+import org.codelibs.fess.suggest.concurrent.Deferred;
 import org.codelibs.fess.suggest.converter.AnalyzerConverter;
 import org.codelibs.fess.suggest.converter.KatakanaToAlphabetConverter;
 import org.codelibs.fess.suggest.converter.ReadingConverter;
@@ -45,17 +49,38 @@ import org.codelibs.fess.suggest.normalizer.Normalizer;
 import org.codelibs.fess.suggest.normalizer.NormalizerChain;
 import org.codelibs.fess.suggest.settings.AnalyzerSettings;
 import org.codelibs.fess.suggest.settings.SuggestSettings;
+import org.elasticsearch.ElasticsearchTimeoutException;
+import org.elasticsearch.ResourceNotFoundException;
+import org.elasticsearch.action.Action;
+import org.elasticsearch.action.ActionFuture;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionResponse;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.action.support.WriteRequest;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.json.JsonXContent;
 import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.reindex.AbstractBulkByScrollRequestBuilder;
+import org.elasticsearch.index.reindex.BulkByScrollResponse;
+import org.elasticsearch.index.reindex.BulkByScrollTask;
+import org.elasticsearch.index.reindex.DeleteByQueryAction;
+import org.elasticsearch.index.reindex.DeleteByQueryRequestBuilder;
 import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.tasks.TaskId;
+import org.elasticsearch.tasks.TaskInfo;
 
 public final class SuggestUtil {
+    private static final Logger logger = LogManager.getLogger(SuggestUtil.class);
+
     private static final int MAX_QUERY_TERM_NUM = 5;
     private static final int MAX_QUERY_TERM_LENGTH = 48;
 
@@ -234,6 +259,11 @@ public final class SuggestUtil {
 
     public static boolean deleteByQuery(final Client client, final SuggestSettings settings, final String index, final String type,
             final QueryBuilder queryBuilder) {
+        return deleteByQuery(client, settings, index, type, queryBuilder, WriteRequest.RefreshPolicy.NONE, true);
+    }
+
+    public static boolean deleteByQuery(final Client client, final SuggestSettings settings, final String index, final String type,
+            final QueryBuilder queryBuilder, final WriteRequest.RefreshPolicy refreshPolicy, final boolean refresh) {
         try {
             SearchResponse searchResponse = client.prepareSearch(index).setTypes(type).setQuery(queryBuilder).setSize(500)
                     .setScroll(settings.getScrollTimeout()).execute().actionGet(settings.getSearchTimeout());
@@ -244,6 +274,7 @@ public final class SuggestUtil {
 
                 final BulkRequestBuilder bulkRequestBuiler = client.prepareBulk();
                 Stream.of(hits).map(SearchHit::getId).forEach(id -> bulkRequestBuiler.add(new DeleteRequest(index, type, id)));
+                bulkRequestBuiler.setRefreshPolicy(refreshPolicy);
 
                 final BulkResponse bulkResponse = bulkRequestBuiler.execute().actionGet(settings.getBulkTimeout());
                 if (bulkResponse.hasFailures()) {
@@ -252,7 +283,9 @@ public final class SuggestUtil {
                 searchResponse = client.prepareSearchScroll(scrollId).setScroll(settings.getScrollTimeout()).execute()
                         .actionGet(settings.getSearchTimeout());
             }
-            client.admin().indices().prepareRefresh(index).execute().actionGet(settings.getIndicesTimeout());
+            if (refresh) {
+                client.admin().indices().prepareRefresh(index).execute().actionGet(settings.getIndicesTimeout());
+            }
         } catch (final Exception e) {
             throw new SuggesterException("Failed to exec delete by query.", e);
         }
@@ -260,6 +293,127 @@ public final class SuggestUtil {
         return true;
     }
 
+    public static <Res extends ActionResponse> void execute(final Client client, final Action<Res> action, final ActionRequest request,
+            final Deferred<?> deferred, final ActionListener<Res> listener) {
+        if (!(client instanceof NodeClient)) {
+            // a remote search can only be cancelled by its task id, which the transport client does not return.
+            client.execute(action, request, listener);
+            return;
+        }
+        final NodeClient nodeClient = (NodeClient) client;
+        final Task task = nodeClient.executeLocally(action, request, listener);
+        final TaskId taskId = new TaskId(nodeClient.getLocalNodeId(), task.getId());
+        deferred.onCancel(() -> client.admin().cluster().prepareCancelTasks().setTaskId(taskId)
+                .execute(ActionListener.wrap(response -> {}, e -> logger.debug("Failed to cancel " + taskId, e))));
+    }
+
+    public static void clearScroll(final Client client, final SuggestSettings settings, final String scrollId) {
+        if (scrollId == null) {
+            return;
+        }
+        client.prepareClearScroll().addScrollId(scrollId).execute().actionGet(settings.getSearchTimeout());
+    }
+
+    public static BulkByScrollResponse deleteByQuery(final Client client, final SuggestSettings settings, final String index,
+            final QueryBuilder queryBuilder, final boolean refresh, final int slices, final float requestsPerSecond,
+            final long pollInterval, final Predicate<BulkByScrollTask.Status> listener) {
+        final DeleteByQueryRequestBuilder builder = new DeleteByQueryRequestBuilder(client, DeleteByQueryAction.INSTANCE);
+        builder.source(index).filter(queryBuilder).setSlices(slices).setRequestsPerSecond(requestsPerSecond).refresh(refresh);
+        final BulkByScrollResponse response =
+                executeByQuery(client, settings, builder, DeleteByQueryAction.INSTANCE, pollInterval, listener);
+        if (response.getReasonCancelled() != null) {
+            throw new SuggesterException("Delete by query was cancelled: " + response.getReasonCancelled());
+        }
+        if (!response.getBulkFailures().isEmpty()) {
+            throw new SuggesterException("Failed to exec delete by query. " + response.getBulkFailures().get(0).getMessage());
+        }
+        if (!response.getSearchFailures().isEmpty()) {
+            throw new SuggesterException("Failed to exec delete by query.", response.getSearchFailures().get(0).getReason());
+        }
+        return response;
+    }
+
+    public static BulkByScrollResponse executeByQuery(final Client client, final SuggestSettings settings,
+            final AbstractBulkByScrollRequestBuilder<?, ?> builder, final Action<BulkByScrollResponse> action, final long pollInterval,
+            final Predicate<BulkByScrollTask.Status> listener) {
+        final ActionFuture<BulkByScrollResponse> future;
+        TaskId taskId = null;
+        if (client instanceof NodeClient) {
+            // the task is registered before it runs, so its id is known without looking it up.
+            final NodeClient nodeClient = (NodeClient) client;
+            final PlainActionFuture<BulkByScrollResponse> actionFuture = PlainActionFuture.newFuture();
+            final Task task = nodeClient.executeLocally(action, builder.request(), actionFuture);
+            taskId = new TaskId(nodeClient.getLocalNodeId(), task.getId());
+            future = actionFuture;
+        } else {
+            future = builder.execute();
+        }
+
+        final long timeout = TimeValue.parseTimeValue(settings.getByQueryTimeout(), "byQueryTimeout").millis();
+        final long start = System.currentTimeMillis();
+        final String[] indices = builder.request().getSearchRequest().indices();
+        boolean cancelled = false;
+        while (true) {
+            final long remaining = Math.max(1, timeout - (System.currentTimeMillis() - start));
+            try {
+                return future.actionGet(listener == null ? remaining : Math.min(pollInterval, remaining));
+            } catch (final ElasticsearchTimeoutException e) {
+                // still running
+            }
+            if (System.currentTimeMillis() - start >= timeout) {
+                if (taskId == null) {
+                    taskId = findByQueryTask(client, settings, action.name(), indices);
+                }
+                if (taskId != null) {
+                    cancelTask(client, settings, taskId);
+                }
+                throw new SuggesterException("Timed out after " + settings.getByQueryTimeout() + ": " + action.name());
+            }
+            if (cancelled || listener == null) {
+                continue;
+            }
+            if (taskId == null) {
+                taskId = findByQueryTask(client, settings, action.name(), indices);
+                if (taskId == null) {
+                    continue;
+                }
+            }
+            try {
+                final Task.Status status = client.admin().cluster().prepareGetTask(taskId).execute()
+                        .actionGet(settings.getClusterTimeout()).getTask().getTask().getStatus();
+                if (status instanceof BulkByScrollTask.Status && !listener.test((BulkByScrollTask.Status) status)) {
+                    cancelTask(client, settings, taskId);
+                    cancelled = true;
+                }
+            } catch (final ResourceNotFoundException e) {
+                // finished between polls
+            }
+        }
+    }
+
+    private static void cancelTask(final Client client, final SuggestSettings settings, final TaskId taskId) {
+        client.admin().cluster().prepareCancelTasks().setTaskId(taskId).execute().actionGet(settings.getClusterTimeout());
+    }
+
+    private static TaskId findByQueryTask(final Client client, final SuggestSettings settings, final String action,
+            final String[] indices) {
+        // without the task handle, a task is used only when it is the only candidate, so another job's task is never cancelled.
+        TaskId taskId = null;
+        for (final TaskInfo taskInfo : client.admin().cluster().prepareListTasks().setActions(action).setDetailed(true).execute()
+                .actionGet(settings.getClusterTimeout()).getTasks()) {
+            if (taskInfo.getParentTaskId().isSet() || taskInfo.getDescription() == null) {
+                continue;
+            }
+            if (Stream.of(indices).allMatch(taskInfo.getDescription()::contains)) {
+                if (taskId != null) {
+                    return null;
+                }
+                taskId = taskInfo.getTaskId();
+            }
+        }
+        return taskId;
+    }
+
     public static String escapeWildcardQuery(final String query) {
         return query.replace("*", "\\*").replace("?", "\\?");
     }
@@ -18,29 +18,45 @@ package org.codelibs.fess.suggest;
 import static org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner.newConfigs;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 import org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner;
 import org.codelibs.fess.suggest.constants.FieldNames;
 import org.codelibs.fess.suggest.constants.SuggestConstants;
+import org.codelibs.fess.suggest.engine.LocalSuggestEngine;
 import org.codelibs.fess.suggest.entity.ElevateWord;
 import org.codelibs.fess.suggest.entity.SuggestItem;
+import org.codelibs.fess.suggest.index.IndexingCheckpoint;
+import org.codelibs.fess.suggest.index.IndexingJob;
+import org.codelibs.fess.suggest.index.IndexingPipeline;
+import org.codelibs.fess.suggest.index.RefreshPolicy;
+import org.codelibs.fess.suggest.index.SuggestDeleteResponse;
 import org.codelibs.fess.suggest.index.SuggestIndexResponse;
+import org.codelibs.fess.suggest.index.SuggestIndexer;
 import org.codelibs.fess.suggest.index.contents.document.ESSourceReader;
 import org.codelibs.fess.suggest.index.contents.querylog.QueryLog;
 import org.codelibs.fess.suggest.index.contents.querylog.QueryLogReader;
+import org.codelibs.fess.suggest.request.multi.MultiSuggestResponse;
 import org.codelibs.fess.suggest.request.popularwords.PopularWordsResponse;
 import org.codelibs.fess.suggest.request.suggest.SuggestResponse;
+import org.codelibs.fess.suggest.request.suggest.SuggestSession;
 import org.codelibs.fess.suggest.settings.AnalyzerSettings;
 import org.codelibs.fess.suggest.settings.SuggestSettings;
 import org.elasticsearch.action.admin.indices.get.GetIndexResponse;
@@ -49,6 +65,7 @@ import org.elasticsearch.action.index.IndexAction;
 import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.action.support.WriteRequest;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.common.settings.Settings;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -85,6 +102,20 @@ public class SuggesterTest {
         suggester.createIndexIfNothing();
     }
 
+    @Test
+    public void test_suggestAsync() throws Exception {
+        SuggestItem[] items = getItemSet1();
+        suggester.indexer().index(items);
+        suggester.refresh();
+
+        CompletableFuture<String> word = suggester.suggest().setQuery("kensaku").executeAsync(10, TimeUnit.SECONDS)
+                .thenApply(response -> response.getWords().get(0));
+        assertEquals("検索 エンジン", word.get());
+
+        CompletableFuture<Integer> num = suggester.popularWords().setSize(2).executeAsync().thenApply(response -> response.getNum());
+        assertTrue(num.get() >= 0);
+    }
+
     @Test
     public void test_indexAndSuggest() throws Exception {
         SuggestItem[] items = getItemSet1();
@@ -110,6 +141,79 @@ public class SuggesterTest {
         assertEquals(2, response2.getNum());
     }
 
+    @Test
+    public void test_suggestWithSession() throws Exception {
+        SuggestItem[] items = getItemSet1();
+        suggester.indexer().index(items);
+        suggester.refresh();
+
+        final SuggestSession session = new SuggestSession();
+        SuggestResponse response = suggester.suggest().setSession(session).setQuery("kensaku e").execute().getResponse();
+        assertEquals(1, response.getNum());
+        assertEquals(1, session.getWordNum());
+
+        response = suggester.suggest().setSession(session).setQuery("kensaku en").execute().getResponse();
+        assertEquals(1, response.getNum());
+        assertEquals("検索 エンジン", response.getWords().get(0));
+        assertEquals(1, session.getWordNum());
+    }
+
+    @Test
+    public void test_localSuggestEngine() throws Exception {
+        SuggestItem[] items = getItemSet1();
+        suggester.indexer().index(items);
+        suggester.refresh();
+
+        final Path dir = Files.createTempDirectory("local-suggest");
+        final LocalSuggestEngine engine = suggester.createLocalSuggestEngine(dir);
+        assertFalse(engine.isAvailable());
+        engine.rebuild();
+        assertTrue(engine.isAvailable());
+        assertEquals(2, engine.getItemNum());
+
+        SuggestResponse response = suggester.suggest().setLocalSuggestEngine(engine).setQuery("kensaku").execute().getResponse();
+        assertEquals(1, response.getNum());
+        assertEquals("検索 エンジン", response.getWords().get(0));
+
+        response = suggester.suggest().setLocalSuggestEngine(engine).setQuery("kensaku enj").execute().getResponse();
+        assertEquals(1, response.getNum());
+        assertEquals("検索 エンジン", response.getWords().get(0));
+
+        response = suggester.suggest().setLocalSuggestEngine(engine).addKind("query").execute().getResponse();
+        assertEquals(1, response.getNum());
+
+        response = suggester.suggest().setLocalSuggestEngine(engine).addTag("tag3").execute().getResponse();
+        assertEquals(1, response.getNum());
+        assertEquals("全文 検索", response.getWords().get(0));
+
+        final LocalSuggestEngine engine2 = suggester.createLocalSuggestEngine(dir);
+        assertTrue(engine2.load());
+        assertEquals(2, engine2.getItemNum());
+
+        engine.rebuild();
+        try (Stream<Path> paths = Files.list(dir)) {
+            assertEquals(1, paths.filter(path -> path.getFileName().toString().startsWith("snapshot-")).count());
+        }
+        try (Stream<Path> paths = Files.list(dir)) {
+            assertEquals(0, paths.filter(path -> path.getFileName().toString().startsWith("building-")).count());
+        }
+
+        suggester.indexer().addBadWord("ｴﾝｼﾞﾝ", false);
+        response = suggester.suggest().setLocalSuggestEngine(engine).setQuery("kensaku").execute().getResponse();
+        assertEquals(0, response.getNum());
+        suggester.indexer().deleteBadWord("ｴﾝｼﾞﾝ");
+
+        suggester.indexer().deleteAll();
+        suggester.refresh();
+        response = suggester.suggest().setQuery("kensaku").execute().getResponse();
+        assertEquals(0, response.getNum());
+        response = suggester.localSuggest().setQuery("kensaku").execute().getResponse();
+        assertEquals(1, response.getNum());
+        engine.rebuild();
+        response = suggester.localSuggest().setQuery("kensaku").execute().getResponse();
+        assertEquals(0, response.getNum());
+    }
+
     @Test
     public void test_update() throws Exception {
         SuggestItem[] items = getItemSet1();
@@ -235,6 +339,11 @@ public class SuggesterTest {
         assertEquals(1, response2.getNum());
         assertEquals(1, response2.getTotal());
         assertEquals("美味しい", response2.getWords().get(0));
+
+        final int numberOfSuggestDocs = suggester.indexer().indexFromDocument(new Map[] { document }).getNumberOfSuggestDocs();
+        SuggestIndexResponse indexResponse = suggester.indexer().indexFromDocument(new Map[] { document, document });
+        assertEquals(2, indexResponse.getNumberOfInputDocs());
+        assertEquals(numberOfSuggestDocs * 2, indexResponse.getNumberOfSuggestDocs());
     }
 
     @Test
@@ -388,6 +497,189 @@ public class SuggesterTest {
         assertEquals(1, response.getNum());
     }
 
+    @Test
+    public void test_indexFromDocumentReaderWithRefreshPolicy() throws Exception {
+        Client client = runner.client();
+        int num = 1000;
+        String indexName = "test";
+        String typeName = "test";
+
+        BulkRequestBuilder bulkRequestBuilder = client.prepareBulk();
+        for (int i = 0; i < num; i++) {
+            Map<String, Object> source = Collections.singletonMap("content", "test");
+            IndexRequestBuilder indexRequestBuilder = new IndexRequestBuilder(client, IndexAction.INSTANCE);
+            indexRequestBuilder.setIndex(indexName).setType(typeName).setId(String.valueOf(i)).setCreate(true).setSource(source);
+            bulkRequestBuilder.add(indexRequestBuilder);
+        }
+        bulkRequestBuilder.execute().actionGet();
+        runner.refresh();
+
+        CountDownLatch latch = new CountDownLatch(2);
+        AtomicInteger numObInputDoc = new AtomicInteger(0);
+        SuggestIndexer indexer = suggester.indexer().setRefreshPolicy(RefreshPolicy.END_OF_JOB).setDisableRefreshIntervalOnJob(true);
+        for (int i = 0; i < 2; i++) {
+            ESSourceReader reader = new ESSourceReader(client, suggester.settings(), indexName, typeName);
+            reader.setScrollSize(100);
+            indexer.indexFromDocument(() -> reader, 100, 0).then(response -> {
+                numObInputDoc.addAndGet(response.getNumberOfInputDocs());
+                latch.countDown();
+            }).error(t -> {
+                t.printStackTrace();
+                latch.countDown();
+                fail();
+            });
+        }
+        latch.await();
+        assertEquals(num * 2, numObInputDoc.get());
+
+        SuggestResponse response = suggester.suggest().setQuery("test").setSuggestDetail(true).execute().getResponse();
+        assertEquals(1, response.getNum());
+        assertNull(client.admin().indices().prepareGetSettings(suggester.getIndex()).execute().actionGet().getIndexToSettings()
+                .valuesIt().next().get("index.refresh_interval"));
+    }
+
+    @Test
+    public void test_indexFromDocumentJob() throws Exception {
+        Client client = runner.client();
+        int num = 1000;
+        String indexName = "test";
+        String typeName = "test";
+
+        BulkRequestBuilder bulkRequestBuilder = client.prepareBulk();
+        for (int i = 0; i < num; i++) {
+            Map<String, Object> source = Collections.singletonMap("content", "test");
+            IndexRequestBuilder indexRequestBuilder = new IndexRequestBuilder(client, IndexAction.INSTANCE);
+            indexRequestBuilder.setIndex(indexName).setType(typeName).setId(String.valueOf(i)).setCreate(true).setSource(source);
+            bulkRequestBuilder.add(indexRequestBuilder);
+        }
+        bulkRequestBuilder.execute().actionGet();
+        runner.refresh();
+
+        ESSourceReader reader = new ESSourceReader(client, suggester.settings(), indexName, typeName);
+        reader.setScrollSize(100);
+        IndexingJob job = suggester.indexer().startIndexFromDocument(() -> reader, 100, 10);
+        job.pause();
+        assertTrue(job.isPaused());
+        Thread.sleep(500);
+        long docsRead = job.getDocsRead();
+        Thread.sleep(500);
+        assertEquals(docsRead, job.getDocsRead());
+        job.resume();
+
+        SuggestIndexResponse response = job.promise().getResponse();
+        assertTrue(job.isDone());
+        assertFalse(job.isCancelled());
+        assertEquals(num, response.getNumberOfInputDocs());
+        assertEquals(num, job.getDocsRead());
+        assertEquals(num, job.getTotalDocs());
+        assertEquals(0, job.getErrorCount());
+        assertTrue(job.getItemsWritten() > 0);
+
+        ESSourceReader reader2 = new ESSourceReader(client, suggester.settings(), indexName, typeName);
+        reader2.setScrollSize(100);
+        IndexingJob job2 = suggester.indexer().startIndexFromDocument(() -> reader2, 100, 1000);
+        job2.cancel();
+        SuggestIndexResponse response2 = job2.promise().getResponse();
+        assertTrue(job2.isCancelled());
+        assertTrue(response2.getNumberOfInputDocs() < num);
+    }
+
+    @Test
+    public void test_indexFromDocumentPipeline() throws Exception {
+        Client client = runner.client();
+        int num = 1000;
+        String indexName = "test";
+        String typeName = "test";
+
+        BulkRequestBuilder bulkRequestBuilder = client.prepareBulk();
+        for (int i = 0; i < num; i++) {
+            Map<String, Object> source = Collections.singletonMap("content", "test" + (i % 10));
+            IndexRequestBuilder indexRequestBuilder = new IndexRequestBuilder(client, IndexAction.INSTANCE);
+            indexRequestBuilder.setIndex(indexName).setType(typeName).setId(String.valueOf(i)).setCreate(true).setSource(source);
+            bulkRequestBuilder.add(indexRequestBuilder);
+        }
+        bulkRequestBuilder.execute().actionGet();
+        runner.refresh();
+
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger numObInputDoc = new AtomicInteger(0);
+        ESSourceReader reader = new ESSourceReader(client, suggester.settings(), indexName, typeName);
+        reader.setScrollSize(100);
+
+        IndexingPipeline pipeline =
+                suggester.indexer().pipeline(() -> reader).setDocPerReq(50).setParseThreadNum(2).setWriteThreadNum(2).setWriteBatchSize(5);
+        pipeline.execute().then(response -> {
+            numObInputDoc.set(response.getNumberOfInputDocs());
+            latch.countDown();
+        }).error(t -> {
+            t.printStackTrace();
+            latch.countDown();
+            fail();
+        });
+        latch.await();
+        assertEquals(num, numObInputDoc.get());
+        assertEquals(num, pipeline.getStageMetrics().get(0).getItemCount());
+        assertEquals(0, pipeline.getStageMetrics().get(0).getQueueDepth());
+
+        SuggestResponse response = suggester.suggest().setQuery("test").setSize(20).setSuggestDetail(true).execute().getResponse();
+        assertEquals(10, response.getNum());
+        assertEquals(100, response.getItems().get(0).getDocFreq());
+    }
+
+    @Test
+    public void test_indexFromDocumentReaderWithCheckpoint() throws Exception {
+        Client client = runner.client();
+        int num = 100;
+        String indexName = "test";
+        String typeName = "test";
+
+        BulkRequestBuilder bulkRequestBuilder = client.prepareBulk();
+        for (int i = 0; i < num; i++) {
+            Map<String, Object> source = new HashMap<>();
+            source.put("content", "test");
+            source.put("seq", i);
+            IndexRequestBuilder indexRequestBuilder = new IndexRequestBuilder(client, IndexAction.INSTANCE);
+            indexRequestBuilder.setIndex(indexName).setType(typeName).setId(String.valueOf(i)).setCreate(true).setSource(source);
+            bulkRequestBuilder.add(indexRequestBuilder);
+        }
+        bulkRequestBuilder.execute().actionGet();
+        runner.refresh();
+
+        suggester.settings().set("checkpoint_job1",
+                new IndexingCheckpoint("job1", Arrays.asList("49", "49"), 1, 50, System.currentTimeMillis()).toSource());
+        assertEquals(Arrays.asList("49", "49"), suggester.indexer().getCheckpoint("job1").getCursor());
+
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger numObInputDoc = new AtomicInteger(0);
+        AtomicInteger numOfReadDoc = new AtomicInteger(0);
+        suggester.indexer().indexFromDocument(cursor -> {
+            ESSourceReader reader = new ESSourceReader(client, suggester.settings(), indexName, typeName) {
+                @Override
+                public Map<String, Object> read() {
+                    Map<String, Object> source = super.read();
+                    if (source != null) {
+                        numOfReadDoc.incrementAndGet();
+                    }
+                    return source;
+                }
+            };
+            reader.setScrollSize(10);
+            reader.setCursor("seq", cursor);
+            return reader;
+        }, "job1", "seq", 10, 0).then(response -> {
+            numObInputDoc.set(response.getNumberOfInputDocs());
+            latch.countDown();
+        }).error(t -> {
+            t.printStackTrace();
+            latch.countDown();
+            fail();
+        });
+        latch.await();
+        assertEquals(num, numObInputDoc.get());
+        assertEquals(50, numOfReadDoc.get());
+        assertNull(suggester.indexer().getCheckpoint("job1"));
+    }
+
     @Test
     public void test_indexFromSearchWord() throws Exception {
         SuggestIndexResponse indexResponse = suggester.indexer().indexFromSearchWord("検索　 エンジン", null, null, null, 1, null);
@@ -432,6 +724,24 @@ public class SuggesterTest {
         assertEquals(0, elevateWords.length);
     }
 
+    @Test
+    public void test_addElevateWords() throws Exception {
+        ElevateWord elevateWord1 =
+                new ElevateWord("Test", 2.0f, Collections.singletonList("Test"), Collections.singletonList("content"), null, null);
+        ElevateWord elevateWord2 =
+                new ElevateWord("hoge", 2.0f, Collections.singletonList("hoge"), Collections.singletonList("content"), null, null);
+
+        suggester.indexer().addElevateWords(new ElevateWord[] { elevateWord1, elevateWord2 }, true);
+        suggester.indexer().addElevateWords(new ElevateWord[] { elevateWord1, elevateWord2 }, true);
+        suggester.refresh();
+
+        assertEquals(2, suggester.settings().elevateWord().get().length);
+        SuggestResponse response1 = suggester.suggest().setQuery("tes").setSuggestDetail(true).execute().getResponse();
+        assertEquals(1, response1.getNum());
+        SuggestResponse response2 = suggester.suggest().setQuery("hoge").setSuggestDetail(true).execute().getResponse();
+        assertEquals(1, response2.getNum());
+    }
+
     @Test
     public void test_restoreElevateWord() throws Exception {
         ElevateWord elevateWord1 =
@@ -525,6 +835,21 @@ public class SuggesterTest {
         assertEquals(0, suggester.settings().badword().get(false).length);
     }
 
+    @Test
+    public void test_addNgWords() throws Exception {
+        SuggestItem[] items = getItemSet1();
+        suggester.indexer().index(items);
+        suggester.refresh();
+
+        suggester.indexer().addBadWords(new String[] { "ｴﾝｼﾞﾝ", "全文" }, true);
+        suggester.refresh();
+        SuggestResponse response = suggester.suggest().setQuery("kensaku").setSuggestDetail(true).execute().getResponse();
+        assertEquals(0, response.getNum());
+        response = suggester.suggest().setQuery("zenbun").setSuggestDetail(true).execute().getResponse();
+        assertEquals(0, response.getNum());
+        assertEquals(2, suggester.settings().badword().get(false).length);
+    }
+
     @Test
     public void test_popularWords() throws Exception {
         SuggestItem[] items = getPopularWordsItemSet2();
@@ -605,6 +930,49 @@ public class SuggesterTest {
         }
     }
 
+    @Test
+    public void test_popularWordsWithSeed() throws Exception {
+        SuggestItem[] items = getPopularWordsItemSet2();
+        suggester.indexer().index(items);
+        suggester.refresh();
+
+        final PopularWordsResponse response1 = suggester.popularWords().setSize(3).setSeed("seed").execute().getResponse();
+        final PopularWordsResponse response2 = suggester.popularWords().setSize(3).setSeed("seed").execute().getResponse();
+        assertEquals(3, response1.getNum());
+        assertEquals(response1.getWords(), response2.getWords());
+
+        final PopularWordsResponse response3 = suggester.popularWords().setSize(10).setQueryFreqThreshold(18).execute().getResponse();
+        assertEquals(2, response3.getTotal());
+        assertEquals(2, response3.getNum());
+        assertTrue(response3.getWords().contains("クエリー3"));
+        assertTrue(response3.getWords().contains("クエリー4"));
+    }
+
+    @Test
+    public void test_multiSuggest() throws Exception {
+        suggester.indexer().index(getItemSet1());
+        suggester.indexer().index(getPopularWordsItemSet2());
+        suggester.refresh();
+
+        MultiSuggestResponse response = suggester.multi().add(suggester.suggest().setQuery("kensaku"))
+                .add(suggester.suggest().setQuery("zenbun")).add(suggester.popularWords().setSize(2)).execute().getResponse();
+        assertEquals(3, response.size());
+        assertFalse(response.isFailure(0));
+        assertFalse(response.isFailure(1));
+        assertFalse(response.isFailure(2));
+
+        final SuggestResponse response1 = response.getResponse(0);
+        assertEquals(1, response1.getNum());
+        assertEquals("検索 エンジン", response1.getWords().get(0));
+
+        final SuggestResponse response2 = response.getResponse(1);
+        assertEquals(1, response2.getNum());
+        assertEquals("全文 検索", response2.getWords().get(0));
+
+        final PopularWordsResponse response3 = response.getResponse(2);
+        assertEquals(2, response3.getNum());
+    }
+
     @Test
     public void test_escapeQuery() throws Exception {
         SuggestItem[] items = getItemSet2();
@@ -649,6 +1017,21 @@ public class SuggesterTest {
         assertEquals(0, suggester.getQueryWordsNum());
     }
 
+    @Test
+    public void test_deleteAllWordsWithNativeDeleteByQuery() throws Exception {
+        SuggestItem[] items = getItemSet1();
+        suggester.indexer().index(items);
+        suggester.refresh();
+
+        assertEquals(2, suggester.getAllWordsNum());
+
+        suggester.indexer().setNativeDeleteByQuery(true).setByQueryPollInterval(10).setByQueryListener(status -> true);
+        SuggestDeleteResponse response = suggester.indexer().deleteAll();
+        assertFalse(response.hasError());
+        suggester.refresh();
+        assertEquals(0, suggester.getAllWordsNum());
+    }
+
     @Test
     public void test_deleteDocumentWords() throws Exception {
         SuggestItem[] items = getItemSet1();
@@ -683,6 +1066,63 @@ public class SuggesterTest {
         assertEquals(0, suggester.getQueryWordsNum());
     }
 
+    @Test
+    public void test_deleteDocumentWordsByQuery() throws Exception {
+        SuggestItem[] items = getItemSet1();
+        suggester.indexer().index(items);
+        suggester.refresh();
+
+        suggester.indexer().setUpdateByQuery(true).setByQuerySlices(2).deleteDocumentWords();
+        suggester.refresh();
+        assertEquals(1, suggester.getAllWordsNum());
+        assertEquals(0, suggester.getDocumentWordsNum());
+        assertEquals(1, suggester.getQueryWordsNum());
+    }
+
+    @Test
+    public void test_deleteQueryWordsByQuery() throws Exception {
+        SuggestItem[] items = getItemSet1();
+        suggester.indexer().index(items);
+        suggester.refresh();
+
+        suggester.indexer().setUpdateByQuery(true).deleteQueryWords();
+        suggester.refresh();
+        assertEquals(2, suggester.getAllWordsNum());
+        assertEquals(2, suggester.getDocumentWordsNum());
+        assertEquals(0, suggester.getQueryWordsNum());
+    }
+
+    @Test
+    public void test_rebuildIndex() throws Exception {
+        suggester.indexer().index(getItemSet2());
+        suggester.refresh();
+
+        Thread.sleep(1000);
+        suggester.createNextIndex(true);
+        assertTrue(suggester.isRebuilding());
+        assertTrue(Suggester.builder().build(runner.client(), "SuggesterTest").isRebuilding());
+        suggester.indexer().index(getItemSet1());
+        suggester.indexer().index(getItemSet1());
+
+        SuggestResponse response = suggester.suggest().setSuggestDetail(true).execute().getResponse();
+        assertEquals(3, response.getNum());
+
+        suggester.finishRebuild();
+        assertFalse(suggester.isRebuilding());
+
+        response = suggester.suggest().setQuery("kensaku").setSuggestDetail(true).execute().getResponse();
+        assertEquals(1, response.getNum());
+        assertEquals("検索 エンジン", response.getWords().get(0));
+        assertEquals(2, response.getItems().get(0).getDocFreq());
+        assertEquals(2, suggester.getAllWordsNum());
+        assertEquals(1, suggester.getQueryWordsNum());
+
+        Settings settings = runner.client().admin().indices().prepareGetSettings(suggester.getIndex()).execute().actionGet()
+                .getIndexToSettings().valuesIt().next();
+        assertEquals("10s", settings.get("index.refresh_interval"));
+        assertEquals("0-1", settings.get("index.auto_expand_replicas"));
+    }
+
     @Test
     public void test_switchIndex() throws Exception {
         SuggestItem[] items = getItemSet1();
@@ -16,12 +16,18 @@
 package org.codelibs.fess.suggest.concurrent;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.Collections;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.codelibs.fess.suggest.exception.SuggesterException;
 import org.codelibs.fess.suggest.request.suggest.SuggestResponse;
@@ -142,4 +148,63 @@ public class DeferredTest {
         }
     }
 
+
+    @Test
+    public void test_toCompletableFuture() throws Exception {
+        final Deferred<SuggestResponse> deferred = new Deferred<>();
+        final CompletableFuture<Integer> future = deferred.promise().toCompletableFuture().thenApply(SuggestResponse::getNum);
+        assertFalse(future.isDone());
+
+        deferred.resolve(new SuggestResponse("", 0, Collections.emptyList(), 0, null));
+        assertEquals(0, future.get(10, TimeUnit.SECONDS).intValue());
+    }
+
+    @Test
+    public void test_toCompletableFutureWithError() throws Exception {
+        final Deferred<SuggestResponse> deferred = new Deferred<>();
+        final CompletableFuture<SuggestResponse> future = deferred.promise().toCompletableFuture();
+
+        final Exception error = new Exception();
+        deferred.reject(error);
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (final ExecutionException e) {
+            assertSame(error, e.getCause());
+        }
+    }
+
+    @Test
+    public void test_toCompletableFutureWithTimeout() throws Exception {
+        final Deferred<SuggestResponse> deferred = new Deferred<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        deferred.onCancel(latch::countDown);
+        final CompletableFuture<SuggestResponse> future = deferred.promise().toCompletableFuture(100, TimeUnit.MILLISECONDS);
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (final ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertTrue(deferred.promise().isCancelled());
+    }
+
+    @Test
+    public void test_cancel() throws Exception {
+        final Deferred<SuggestResponse> deferred = new Deferred<>();
+        final CountDownLatch latch = new CountDownLatch(2);
+        deferred.onCancel(latch::countDown);
+        deferred.promise().error(error -> {
+            if (error instanceof CancellationException) {
+                latch.countDown();
+            }
+        });
+
+        final CompletableFuture<SuggestResponse> future = deferred.promise().toCompletableFuture();
+        assertTrue(future.cancel(true));
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertTrue(deferred.promise().isCancelled());
+        assertFalse(deferred.promise().cancel());
+    }
 }
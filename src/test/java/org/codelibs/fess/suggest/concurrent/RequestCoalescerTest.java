@@ -0,0 +1,93 @@
+/*
+ * Copyright 2009-2019 the CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.suggest.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.codelibs.fess.suggest.request.suggest.SuggestResponse;
+import org.junit.Test;
+
+public class RequestCoalescerTest {
+    @Test
+    public void test_coalesceSameKey() throws Exception {
+        final RequestCoalescer<SuggestResponse> coalescer = new RequestCoalescer<>();
+        final Deferred<SuggestResponse> deferred = new Deferred<>();
+
+        final Deferred<SuggestResponse>.Promise promise1 = coalescer.execute("key", deferred::promise);
+        final Deferred<SuggestResponse>.Promise promise2 = coalescer.execute("key", () -> {
+            throw new AssertionError("should be coalesced");
+        });
+        assertNotSame(promise1, promise2);
+        assertEquals(1, coalescer.getLeaderCount());
+        assertEquals(1, coalescer.getCoalescedCount());
+        assertEquals(1, coalescer.getInFlightCount());
+
+        final SuggestResponse response = new SuggestResponse("", 0, Collections.emptyList(), 0, null);
+        deferred.resolve(response);
+        assertSame(response, promise1.getResponse());
+        assertSame(response, promise2.getResponse());
+        assertEquals(0, coalescer.getInFlightCount());
+    }
+
+    @Test
+    public void test_differentKey() throws Exception {
+        final RequestCoalescer<SuggestResponse> coalescer = new RequestCoalescer<>();
+        coalescer.execute("key1", () -> new Deferred<SuggestResponse>().promise());
+        coalescer.execute("key2", () -> new Deferred<SuggestResponse>().promise());
+        assertEquals(2, coalescer.getLeaderCount());
+        assertEquals(0, coalescer.getCoalescedCount());
+        assertEquals(2, coalescer.getInFlightCount());
+    }
+
+    @Test
+    public void test_newRequestAfterReject() throws Exception {
+        final RequestCoalescer<SuggestResponse> coalescer = new RequestCoalescer<>();
+        final Deferred<SuggestResponse> deferred = new Deferred<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        coalescer.execute("key", deferred::promise).error(error -> latch.countDown());
+        deferred.reject(new Exception());
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(0, coalescer.getInFlightCount());
+
+        coalescer.execute("key", () -> new Deferred<SuggestResponse>().promise());
+        assertEquals(2, coalescer.getLeaderCount());
+        assertEquals(0, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    public void test_cancel() throws Exception {
+        final RequestCoalescer<SuggestResponse> coalescer = new RequestCoalescer<>();
+        final Deferred<SuggestResponse> deferred = new Deferred<>();
+
+        final Deferred<SuggestResponse>.Promise promise1 = coalescer.execute("key", deferred::promise);
+        final Deferred<SuggestResponse>.Promise promise2 = coalescer.execute("key", deferred::promise);
+        assertTrue(promise1.cancel());
+        assertFalse(deferred.promise().isCancelled());
+        assertEquals(1, coalescer.getInFlightCount());
+
+        assertTrue(promise2.cancel());
+        assertTrue(deferred.promise().isCancelled());
+        assertEquals(0, coalescer.getInFlightCount());
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2009-2019 the CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.suggest.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class SuggestThreadPoolTest {
+    @Test
+    public void test_boundedQueue() throws Exception {
+        final SuggestThreadPool pool = new SuggestThreadPool("test", 1, 1, new ThreadPoolExecutor.AbortPolicy());
+        final CountDownLatch latch = new CountDownLatch(1);
+        try {
+            pool.execute(() -> {
+                try {
+                    latch.await();
+                } catch (final InterruptedException ignore) {}
+            });
+            pool.execute(() -> {});
+            try {
+                pool.execute(() -> {});
+                fail();
+            } catch (final RejectedExecutionException e) {
+                // expected
+            }
+            assertEquals(1, pool.getQueueDepth());
+            assertEquals(0, pool.getQueueRemainingCapacity());
+            assertEquals(1, pool.getRejectedCount());
+        } finally {
+            latch.countDown();
+            pool.shutdown();
+        }
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(2, pool.getCompletedTaskCount());
+    }
+
+    @Test
+    public void test_threadName() throws Exception {
+        final SuggestThreadPool pool = new SuggestThreadPool("test", 1, 10, new ThreadPoolExecutor.CallerRunsPolicy());
+        final AtomicReference<Thread> thread = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        try {
+            pool.execute(() -> {
+                thread.set(Thread.currentThread());
+                latch.countDown();
+            });
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            assertEquals("test-1", thread.get().getName());
+            assertTrue(thread.get().isDaemon());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void test_threadPerTask() throws Exception {
+        final ThreadPerTaskExecutor pool = new ThreadPerTaskExecutor("test", 2, new ThreadPoolExecutor.AbortPolicy(),
+                Executors.newCachedThreadPool(SuggestThreadPool.createThreadFactory("test-task")));
+        final CountDownLatch started = new CountDownLatch(2);
+        final CountDownLatch latch = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < 2; i++) {
+                pool.execute(() -> {
+                    started.countDown();
+                    try {
+                        latch.await();
+                    } catch (final InterruptedException ignore) {}
+                });
+            }
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            assertEquals(2, pool.getActiveCount());
+            try {
+                pool.execute(() -> {});
+                fail();
+            } catch (final RejectedExecutionException e) {
+                // expected
+            }
+            assertEquals(1, pool.getRejectedCount());
+        } finally {
+            latch.countDown();
+            pool.shutdown();
+        }
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(pool.isTerminated());
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(2, pool.getCompletedTaskCount());
+    }
+
+    @Test
+    public void test_threadPerTaskShutdownNow() throws Exception {
+        final ThreadPerTaskExecutor pool = new ThreadPerTaskExecutor("test", 1, new ThreadPoolExecutor.AbortPolicy(),
+                Executors.newCachedThreadPool(SuggestThreadPool.createThreadFactory("test-task")));
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        pool.execute(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(60000);
+            } catch (final InterruptedException e) {
+                interrupted.countDown();
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        pool.shutdownNow();
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(pool.isTerminated());
+    }
+}
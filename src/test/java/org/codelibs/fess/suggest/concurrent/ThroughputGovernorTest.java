@@ -0,0 +1,69 @@
+/*
+ * Copyright 2009-2019 the CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.suggest.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ThroughputGovernorTest {
+    @Test
+    public void test_unlimited() throws Exception {
+        final ThroughputGovernor governor = new ThroughputGovernor();
+        final long start = System.currentTimeMillis();
+        for (int i = 0; i < 100; i++) {
+            governor.acquireDocs(1000);
+            governor.acquireItems(1000);
+            governor.record(1024 * 1024, 10, 0);
+        }
+        assertTrue(System.currentTimeMillis() - start < 1000);
+    }
+
+    @Test
+    public void test_limitItems() throws Exception {
+        final ThroughputGovernor governor = new ThroughputGovernor().setItemsPerSecond(1000).setBurstSeconds(0.1);
+        final long start = System.currentTimeMillis();
+        governor.acquireItems(100);
+        governor.acquireItems(500);
+        final long took = System.currentTimeMillis() - start;
+        assertTrue(String.valueOf(took), took >= 400);
+        assertTrue(String.valueOf(took), took < 2000);
+    }
+
+    @Test
+    public void test_limitBytes() throws Exception {
+        final ThroughputGovernor governor = new ThroughputGovernor().setBytesPerSecond(1000).setBurstSeconds(0.1);
+        governor.acquireItems(1);
+        governor.record(600, 10, 0);
+        final long start = System.currentTimeMillis();
+        governor.acquireItems(1);
+        final long took = System.currentTimeMillis() - start;
+        assertTrue(String.valueOf(took), took >= 400);
+    }
+
+    @Test
+    public void test_adaptive() throws Exception {
+        final ThroughputGovernor governor = new ThroughputGovernor().setAdaptive(true).setTargetLatency(100).setMinRateFactor(0.2);
+        governor.record(0, 500, 0);
+        assertEquals(0.5, governor.getRateFactor(), 0.0001);
+        governor.record(0, 10, 1);
+        governor.record(0, 10, 1);
+        assertEquals(0.2, governor.getRateFactor(), 0.0001);
+        governor.record(0, 10, 0);
+        assertEquals(0.25, governor.getRateFactor(), 0.0001);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2009-2019 the CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.suggest.entity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codelibs.fess.suggest.constants.FieldNames;
+import org.codelibs.fess.suggest.constants.SuggestConstants;
+import org.codelibs.fess.suggest.util.SuggestUtil;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.junit.Test;
+
+public class SuggestItemTest {
+    @Test
+    public void test_sharedValues() throws Exception {
+        final SuggestItem item1 = new SuggestItem(new String[] { "aaa" }, new String[][] { new String[] { "aaa" } },
+                new String[] { new String("content") }, 1, 0, -1, null, null, null, SuggestItem.Kind.DOCUMENT);
+        final SuggestItem item2 = new SuggestItem(new String[] { "bbb" }, new String[][] { new String[] { "bbb" } },
+                new String[] { new String("content") }, 1, 0, -1, null, null, null, SuggestItem.Kind.DOCUMENT);
+
+        assertSame(item1.getFields()[0], item2.getFields()[0]);
+        assertSame(item1.getTags(), item2.getTags());
+        assertSame(item1.getRoles()[0], item2.getRoles()[0]);
+        assertArrayEquals(new String[] { SuggestConstants.DEFAULT_ROLE }, item1.getRoles());
+
+        item1.getRoles()[0] = "role1";
+        item1.getKinds()[0] = SuggestItem.Kind.QUERY;
+        assertArrayEquals(new String[] { SuggestConstants.DEFAULT_ROLE }, item2.getRoles());
+        assertArrayEquals(new SuggestItem.Kind[] { SuggestItem.Kind.DOCUMENT }, item2.getKinds());
+        assertEquals(SuggestUtil.createSuggestTextId("aaa"), item1.getId());
+    }
+
+    @Test
+    public void test_merge() throws Exception {
+        final SuggestItem item1 = new SuggestItem(new String[] { "aaa" }, new String[][] { new String[] { "aaa" } },
+                new String[] { "content" }, 1, 0, -1, new String[] { "tag1" }, null, null, SuggestItem.Kind.DOCUMENT);
+        final SuggestItem item2 = new SuggestItem(new String[] { "aaa" }, new String[][] { new String[] { "aaa" } },
+                new String[] { "content" }, 2, 0, -1, new String[] { "tag2" }, null, null, SuggestItem.Kind.DOCUMENT);
+
+        final SuggestItem merged = SuggestItem.merge(item1, item2);
+        assertEquals(3, merged.getDocFreq());
+        assertSame(item1.getFields(), merged.getFields());
+        assertArrayEquals(new String[] { "tag1", "tag2" }, merged.getTags());
+    }
+
+    @Test
+    public void test_toXContent() throws Exception {
+        final SuggestItem item = new SuggestItem(new String[] { "aaa" }, new String[][] { new String[] { "aaa" } },
+                new String[] { "content" }, 2, 1, -1, new String[] { "tag1" }, null, null, SuggestItem.Kind.DOCUMENT);
+
+        Map<String, Object> source = toMap(item, null);
+        assertEquals("aaa", source.get(FieldNames.TEXT));
+        assertEquals(Arrays.asList("tag1"), source.get(FieldNames.TAGS));
+        assertEquals(Arrays.asList("document"), source.get(FieldNames.KINDS));
+        assertEquals(2, ((Number) source.get(FieldNames.DOC_FREQ)).longValue());
+        assertEquals(3.0, ((Number) source.get(FieldNames.SCORE)).doubleValue(), 0);
+        assertEquals(item.getTimestampMillis(), ((Number) source.get(FieldNames.TIMESTAMP)).longValue());
+
+        final Map<String, Object> existingSource = new HashMap<>();
+        final List<String> tags = new ArrayList<>();
+        tags.add("tag0");
+        existingSource.put(FieldNames.TAGS, tags);
+        existingSource.put(FieldNames.DOC_FREQ, 5L);
+        source = toMap(item, existingSource);
+        assertEquals(Arrays.asList("tag0", "tag1"), source.get(FieldNames.TAGS));
+        assertEquals(Arrays.asList("tag0"), tags);
+        assertEquals(7, ((Number) source.get(FieldNames.DOC_FREQ)).longValue());
+        assertEquals(8.0, ((Number) source.get(FieldNames.SCORE)).doubleValue(), 0);
+    }
+
+    private Map<String, Object> toMap(final SuggestItem item, final Map<String, Object> existingSource) throws Exception {
+        return XContentHelper
+                .convertToMap(BytesReference.bytes(item.toXContent(XContentFactory.jsonBuilder(), existingSource)), false,
+                        XContentType.JSON)
+                .v2();
+    }
+}
@@ -16,8 +16,13 @@
 package org.codelibs.fess.suggest.index.contents;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.codelibs.fess.suggest.analysis.SuggestAnalyzer;
 import org.codelibs.fess.suggest.converter.KatakanaToAlphabetConverter;
 import org.codelibs.fess.suggest.converter.ReadingConverter;
 import org.codelibs.fess.suggest.converter.ReadingConverterChain;
@@ -25,6 +30,7 @@ import org.codelibs.fess.suggest.entity.SuggestItem;
 import org.codelibs.fess.suggest.index.contents.querylog.QueryLog;
 import org.codelibs.fess.suggest.normalizer.Normalizer;
 import org.codelibs.fess.suggest.normalizer.NormalizerChain;
+import org.elasticsearch.action.admin.indices.analyze.AnalyzeResponse;
 
 import junit.framework.TestCase;
 
@@ -62,6 +68,49 @@ public class DefaultContentsParserTest extends TestCase {
         assertEquals("role1", item.getRoles()[0]);
     }
 
+    public void test_parseDocumentWithRepeatedTokens() throws Exception {
+        AtomicInteger convertCount = new AtomicInteger(0);
+        ReadingConverter readingConverter = new ReadingConverter() {
+            @Override
+            public void init() throws IOException {
+            }
+
+            @Override
+            public List<String> convert(String text, String field, String... langs) throws IOException {
+                convertCount.incrementAndGet();
+                return new ArrayList<>();
+            }
+        };
+        SuggestAnalyzer analyzer = new SuggestAnalyzer() {
+            @Override
+            public List<AnalyzeResponse.AnalyzeToken> analyze(String text, String field, String lang) {
+                List<AnalyzeResponse.AnalyzeToken> tokens = new ArrayList<>();
+                for (String term : text.split(" ")) {
+                    tokens.add(new AnalyzeResponse.AnalyzeToken(term, tokens.size(), 0, 0, 1, "word", null));
+                }
+                return tokens;
+            }
+
+            @Override
+            public List<AnalyzeResponse.AnalyzeToken> analyzeAndReading(String text, String field, String lang) {
+                return null;
+            }
+        };
+
+        Map<String, Object> document = new HashMap<>();
+        document.put("content", "aaa bbb aaa aaa bbb ccc");
+        List<SuggestItem> items = defaultContentsParser.parseDocument(document, supportedFields, tagFieldNames, roleFieldName, "lang",
+                readingConverter, readingConverter, createDefaultNormalizer(), analyzer);
+        assertEquals(3, items.size());
+        assertEquals("aaa", items.get(0).getText());
+        assertEquals(3, items.get(0).getDocFreq());
+        assertEquals("bbb", items.get(1).getText());
+        assertEquals(2, items.get(1).getDocFreq());
+        assertEquals("ccc", items.get(2).getText());
+        assertEquals(1, items.get(2).getDocFreq());
+        assertEquals(3, convertCount.get());
+    }
+
     protected ReadingConverter createDefaultReadingConverter() throws IOException {
         ReadingConverterChain chain = new ReadingConverterChain();
         //chain.addConverter(new KatakanaConverter());
@@ -17,7 +17,9 @@ package org.codelibs.fess.suggest.index.contents.document;
 
 import static org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner.newConfigs;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.util.Collections;
 import java.util.HashMap;
@@ -75,6 +77,7 @@ public class ESSourceReaderTest {
         runner.refresh();
         suggester = Suggester.builder().build(runner.client(), "SuggesterTest");
         suggester.createIndexIfNothing();
+        suggester.settings().array().add(SuggestSettings.DefaultKeys.SUPPORTED_FIELDS, "field1");
     }
 
     @Test
@@ -125,6 +128,108 @@ public class ESSourceReaderTest {
         assertTrue(String.valueOf(count), count < 200);
     }
 
+    @Test
+    public void test_ReadWithSlices() throws Exception {
+        String indexName = "test-index";
+        String typeName = "test-type";
+        Client client = runner.client();
+        SuggestSettings settings = suggester.settings();
+        int num = 10000;
+
+        addDocument(indexName, typeName, client, num);
+
+        ESSourceReader reader = new ESSourceReader(client, settings, indexName, typeName);
+        reader.setScrollSize(500);
+        reader.setSliceNum(4);
+        reader.setQueueCapacity(1000);
+        int count = 0;
+        Set<String> valueSet = Collections.synchronizedSet(new HashSet<>());
+        Map<String, Object> source;
+        while ((source = reader.read()) != null) {
+            assertTrue(source.get("field1").toString().startsWith("test"));
+            valueSet.add(source.get("field1").toString());
+            count++;
+        }
+        assertEquals(num, count);
+        assertEquals(num, valueSet.size());
+
+        reader = new ESSourceReader(client, settings, indexName, typeName);
+        reader.setScrollSize(100);
+        reader.setSliceNum(4);
+        reader.setLimitNumber(150);
+        count = 0;
+        while (reader.read() != null) {
+            count++;
+        }
+        reader.close();
+        assertEquals(150, count);
+
+        reader = new ESSourceReader(client, settings, indexName, typeName);
+        reader.addSort(SortBuilders.fieldSort("field2"));
+        reader.setSliceNum(4);
+        try {
+            reader.read();
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        reader.close();
+    }
+
+    @Test
+    public void test_ReadWithPrefetch() throws Exception {
+        String indexName = "test-index";
+        String typeName = "test-type";
+        Client client = runner.client();
+        SuggestSettings settings = suggester.settings();
+        int num = 10000;
+
+        addDocument(indexName, typeName, client, num);
+
+        ESSourceReader reader = new ESSourceReader(client, settings, indexName, typeName);
+        reader.setScrollSize(500);
+        reader.setPrefetchSize(2);
+        reader.setPrefetchMemoryLimit(1024 * 1024);
+        reader.addSort(SortBuilders.fieldSort("field2"));
+        reader.addSourceField("field2");
+        int count = 0;
+        int prev = -1;
+        Map<String, Object> source;
+        while ((source = reader.read()) != null) {
+            int current = Integer.parseInt(source.get("field2").toString());
+            assertTrue(prev < current);
+            prev = current;
+            count++;
+        }
+        assertEquals(num, count);
+    }
+
+    @Test
+    public void test_ReadWithSourceFiltering() throws Exception {
+        String indexName = "test-index";
+        String typeName = "test-type";
+        Client client = runner.client();
+        SuggestSettings settings = suggester.settings();
+        int num = 100;
+
+        addDocument(indexName, typeName, client, num);
+
+        ESSourceReader reader = new ESSourceReader(client, settings, indexName, typeName);
+        reader.setScrollSize(10);
+        reader.setSourceFiltering(true);
+        reader.addSourceField("field1");
+        reader.setLimitOfDocumentSize(49);
+        reader.setDocumentSizeField("field2");
+        int count = 0;
+        Map<String, Object> source;
+        while ((source = reader.read()) != null) {
+            assertTrue(source.get("field1").toString().startsWith("test"));
+            assertFalse(source.containsKey("field2"));
+            count++;
+        }
+        assertEquals(50, count);
+    }
+
     @Test
     public void test_ReadMultiThread() throws Exception {
         int threadNum = new Random().nextInt(20) + 1;
@@ -188,6 +293,57 @@ public class ESSourceReaderTest {
         assertEquals(num, valueSet2.size());
     }
 
+    @Test
+    public void test_ReadWithCursor() throws Exception {
+        String indexName = "test-index";
+        String typeName = "test-type";
+        Client client = runner.client();
+        SuggestSettings settings = suggester.settings();
+        int num = 100;
+
+        BulkRequestBuilder bulkRequestBuilder = client.prepareBulk();
+        for (int i = 0; i < num; i++) {
+            final Map<String, Object> source = new HashMap<>();
+            source.put("field1", "test" + i);
+            source.put("field2", i / 10);
+            IndexRequestBuilder indexRequestBuilder = new IndexRequestBuilder(client, IndexAction.INSTANCE);
+            indexRequestBuilder.setIndex(indexName).setType(typeName).setId(String.valueOf(i)).setCreate(true).setSource(source);
+            bulkRequestBuilder.add(indexRequestBuilder);
+        }
+        bulkRequestBuilder.execute().actionGet();
+        runner.refresh();
+
+        Set<String> valueSet = new HashSet<>();
+        ESSourceReader reader = new ESSourceReader(client, settings, indexName, typeName);
+        reader.setScrollSize(7);
+        reader.setCursor("field2", null);
+        for (int i = 0; i < 25; i++) {
+            valueSet.add(reader.read().get("field1").toString());
+        }
+        final Object cursor = reader.getCursor();
+        reader.close();
+
+        reader = new ESSourceReader(client, settings, indexName, typeName);
+        reader.setScrollSize(7);
+        reader.setCursor("field2", cursor);
+        int count = 0;
+        Map<String, Object> source;
+        while ((source = reader.read()) != null) {
+            assertTrue(valueSet.add(source.get("field1").toString()));
+            count++;
+        }
+        assertEquals(num - 25, count);
+        assertEquals(num, valueSet.size());
+
+        reader.setSliceNum(2);
+        try {
+            reader.read();
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
     @Test
     public void test_getLimitDocNum() throws Exception {
         assertEquals(10, ESSourceReader.getLimitDocNum(100, 10, -1));
@@ -208,6 +364,7 @@ public class ESSourceReaderTest {
         ESSourceReader reader = new ESSourceReader(client, settings, indexName, typeName);
         reader.setScrollSize(1000);
         reader.addSort(SortBuilders.fieldSort("field2"));
+        reader.addSourceField("field2");
         int count = 0;
         int prev = -1;
         Map<String, Object> source;
@@ -222,6 +379,7 @@ public class ESSourceReaderTest {
         reader = new ESSourceReader(client, settings, indexName, typeName);
         reader.setScrollSize(1000);
         reader.addSort(SortBuilders.fieldSort("field2").order(SortOrder.DESC));
+        reader.addSourceField("field2");
         count = 0;
         prev = Integer.MAX_VALUE;
         while ((source = reader.read()) != null) {
@@ -17,6 +17,9 @@ package org.codelibs.fess.suggest.settings;
 
 import static org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner.newConfigs;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
 
 import org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner;
 import org.codelibs.fess.suggest.Suggester;
@@ -77,6 +80,18 @@ public class ArraySettingsTest {
         assertEquals(value3, settings.array().get(key)[2]);
     }
 
+    @Test
+    public void test_addAllAndDeleteAll() {
+        String key = "key";
+        settings.array().addAll(key, Arrays.asList("a", "b", "c"));
+        assertEquals(3, settings.array().get(key).length);
+        assertTrue(Arrays.asList(settings.array().get(key)).containsAll(Arrays.asList("a", "b", "c")));
+
+        settings.array().deleteAll(key, Arrays.asList("a", "c"));
+        assertEquals(1, settings.array().get(key).length);
+        assertEquals("b", settings.array().get(key)[0]);
+    }
+
     @Test
     public void test_delete() {
         String key = "key";
@@ -18,6 +18,9 @@ package org.codelibs.fess.suggest.settings;
 import static org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner.newConfigs;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.fail;
+
+import java.util.Map;
 
 import org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner;
 import org.codelibs.fess.suggest.Suggester;
@@ -82,6 +85,40 @@ public class SuggestSettingsTest {
         assertEquals(indexName, newSettingsInstance.getAsString(SuggestSettings.DefaultKeys.INDEX, ""));
     }
 
+    @Test
+    public void test_refreshCachedSettings() {
+        settings.set(SuggestSettings.DefaultKeys.INDEX, "test1");
+
+        SuggestSettings cachedSettingsInstance = SuggestSettings.builder().cacheCheckInterval(0).build(runner.client(), id);
+        cachedSettingsInstance.init();
+        assertEquals("test1", cachedSettingsInstance.getAsString(SuggestSettings.DefaultKeys.INDEX, ""));
+
+        settings.set(SuggestSettings.DefaultKeys.INDEX, "test2");
+        assertEquals("test2", settings.getAsString(SuggestSettings.DefaultKeys.INDEX, ""));
+        // the version check runs in the background, so the new value shows up on a later call.
+        for (int i = 0; i < 100 && !"test2".equals(cachedSettingsInstance.getAsString(SuggestSettings.DefaultKeys.INDEX, "")); i++) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException ignore) {}
+        }
+        assertEquals("test2", cachedSettingsInstance.getAsString(SuggestSettings.DefaultKeys.INDEX, ""));
+    }
+
+    @Test
+    public void test_arrayCacheIsUnmodifiable() {
+        settings.array().add("key", "value");
+        final Map<String, Object>[] values = settings.array().getFromArrayIndex(settings.array().arraySettingsIndexName,
+                settings.array().settingsId, "key");
+        assertEquals(1, values.length);
+        try {
+            values[0].put("key", "other");
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // ok
+        }
+        assertEquals("value", settings.array().get("key")[0]);
+    }
+
     @Test
     public void test_useOwnSettings() {
         String indexName = "test";
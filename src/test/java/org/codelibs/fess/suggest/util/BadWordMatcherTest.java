@@ -0,0 +1,43 @@
+/*
+ * Copyright 2009-2019 the CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.suggest.util;
+
+import junit.framework.TestCase;
+
+public class BadWordMatcherTest extends TestCase {
+    public void test_matches() {
+        BadWordMatcher matcher = new BadWordMatcher(new String[] { "he", "she", "his", "hers", "検索" });
+        assertTrue(matcher.matches("ushers"));
+        assertTrue(matcher.matches("this"));
+        assertTrue(matcher.matches("全文検索エンジン"));
+        assertFalse(matcher.matches("hi"));
+        assertFalse(matcher.matches("sh"));
+        assertFalse(matcher.matches(""));
+        assertFalse(matcher.matches(null));
+    }
+
+    public void test_matchesWithFailureLink() {
+        BadWordMatcher matcher = new BadWordMatcher(new String[] { "abcd", "bc" });
+        assertTrue(matcher.matches("xabcx"));
+        assertFalse(matcher.matches("abxd"));
+    }
+
+    public void test_emptyWords() {
+        BadWordMatcher matcher = new BadWordMatcher(new String[] { "" });
+        assertFalse(matcher.matches("abc"));
+        assertTrue(matcher.isSameWords(new String[] { "" }));
+    }
+}